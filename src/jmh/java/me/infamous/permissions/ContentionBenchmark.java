@@ -0,0 +1,74 @@
+package me.infamous.permissions;
+
+import me.lucko.fabric.api.permissions.v0.Permissions;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.server.level.ServerPlayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Many threads checking a shared set of players, with and without a concurrent invalidator
+ * standing in for LuckPerms recalculations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ContentionBenchmark {
+    private static final int PLAYERS = 100;
+    private static final String[] NODES = {
+            "bench.contention.a", "bench.contention.b", "bench.contention.c", "bench.contention.d"
+    };
+
+    private ServerPlayer[] players;
+    private CommandSourceStack[] sources;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StandInLuckPerms standIn = StandInLuckPerms.install(0, TimeUnit.MILLISECONDS);
+        for (String node : NODES) {
+            standIn.grant(node, true);
+        }
+        this.players = Fixtures.players(PLAYERS);
+        this.sources = new CommandSourceStack[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            this.sources[i] = Fixtures.source(this.players[i]);
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean check() {
+        return this.checkRandom();
+    }
+
+    @Benchmark
+    @Group("invalidating")
+    @GroupThreads(7)
+    public boolean invalidatingCheck() {
+        return this.checkRandom();
+    }
+
+    @Benchmark
+    @Group("invalidating")
+    @GroupThreads(1)
+    public void invalidatingRecalculate() {
+        PermissionsMod.invalidate(this.players[ThreadLocalRandom.current().nextInt(PLAYERS)].getUUID());
+    }
+
+    private boolean checkRandom() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return Permissions.check(this.sources[random.nextInt(PLAYERS)], NODES[random.nextInt(NODES.length)]);
+    }
+}
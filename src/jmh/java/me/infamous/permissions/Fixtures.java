@@ -0,0 +1,59 @@
+package me.infamous.permissions;
+
+import net.minecraft.SharedConstants;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.server.Bootstrap;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+import org.objenesis.Objenesis;
+import org.objenesis.ObjenesisStd;
+
+import java.lang.reflect.Field;
+import java.util.UUID;
+
+/**
+ * Creates players and command sources for the benchmarks without running their constructors,
+ * which would need a server and a level. Only the fields read by the permission paths are set.
+ */
+final class Fixtures {
+    private static final Objenesis OBJENESIS = new ObjenesisStd(true);
+
+    static {
+        // the entity classes read the registries in their static initializers
+        SharedConstants.tryDetectVersion();
+        Bootstrap.bootStrap();
+    }
+
+    private Fixtures() {
+    }
+
+    static ServerPlayer player(UUID uuid) {
+        ServerPlayer player = OBJENESIS.newInstance(ServerPlayer.class);
+        set(Entity.class, player, "uuid", uuid);
+        return player;
+    }
+
+    static CommandSourceStack source(ServerPlayer player) {
+        CommandSourceStack source = OBJENESIS.newInstance(CommandSourceStack.class);
+        set(CommandSourceStack.class, source, "entity", player);
+        return source;
+    }
+
+    static ServerPlayer[] players(int count) {
+        ServerPlayer[] players = new ServerPlayer[count];
+        for (int i = 0; i < count; i++) {
+            players[i] = player(new UUID(0, i));
+        }
+        return players;
+    }
+
+    private static void set(Class<?> owner, Object target, String name, Object value) {
+        try {
+            Field field = owner.getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not set " + owner.getSimpleName() + "#" + name, e);
+        }
+    }
+}
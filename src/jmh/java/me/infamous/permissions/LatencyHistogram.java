@@ -0,0 +1,77 @@
+package me.infamous.permissions;
+
+/**
+ * A log-linear latency histogram with 16 sub-buckets per power of two, so percentiles are
+ * within about 6% of the recorded value. Not thread-safe: each simulated thread records into
+ * its own histogram, and they are {@link #add(LatencyHistogram) merged} once a scenario ends.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        this.counts[index(nanos)]++;
+        this.count++;
+        this.totalNanos += nanos;
+        if (nanos > this.maxNanos) this.maxNanos = nanos;
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.counts[i] += other.counts[i];
+        }
+        this.count += other.count;
+        this.totalNanos += other.totalNanos;
+        this.maxNanos = Math.max(this.maxNanos, other.maxNanos);
+    }
+
+    long getCount() {
+        return this.count;
+    }
+
+    double getAverageNanos() {
+        return this.count == 0 ? 0 : this.totalNanos / (double) this.count;
+    }
+
+    long getMaxNanos() {
+        return this.maxNanos;
+    }
+
+    /**
+     * Gets the value at the given percentile, as the midpoint of the bucket it falls in.
+     *
+     * @param percentile the percentile, between 0 and 1
+     * @return the value in nanoseconds
+     */
+    long getPercentileNanos(double percentile) {
+        if (this.count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile * this.count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.counts[i];
+            if (seen >= rank) return Math.min(this.maxNanos, (lowerBound(i) + lowerBound(i + 1) - 1) / 2);
+        }
+        return this.maxNanos;
+    }
+
+    private static int index(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) ((nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    private static long lowerBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKETS;
+        return (long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+}
@@ -0,0 +1,57 @@
+package me.infamous.permissions;
+
+import me.lucko.fabric.api.permissions.v0.Permissions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Offline checks through the whole future chain, with the user either already in the
+ * {@link OfflineUserCache} or loaded from (simulated) storage on every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OfflineBenchmark {
+    private static final String GRANTED = "bench.offline.home";
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    @Param({"0", "50"})
+    public int storageLatencyMicros;
+
+    private UUID uuid;
+    private List<UUID> uuids;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StandInLuckPerms.install(this.storageLatencyMicros, TimeUnit.MICROSECONDS).grant(GRANTED, true);
+        PermissionExecutors.configure(PermissionsConfig.ExecutorType.POOL, 2);
+        this.uuid = UUID.randomUUID();
+        this.uuids = List.of(new UUID(1, 1), new UUID(1, 2), new UUID(1, 3), new UUID(1, 4));
+    }
+
+    @Benchmark
+    public Boolean check() {
+        if (!this.cached) PermissionsMod.OFFLINE_USERS.invalidate(this.uuid);
+        return Permissions.check(this.uuid, GRANTED).join();
+    }
+
+    @Benchmark
+    public Map<UUID, Boolean> checkAll() {
+        if (!this.cached) PermissionsMod.OFFLINE_USERS.invalidateAll();
+        return Permissions.checkAll(this.uuids, GRANTED).join();
+    }
+}
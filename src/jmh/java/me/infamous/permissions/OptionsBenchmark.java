@@ -0,0 +1,69 @@
+package me.infamous.permissions;
+
+import me.lucko.fabric.api.permissions.v0.OptionKey;
+import me.lucko.fabric.api.permissions.v0.Options;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.server.level.ServerPlayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Option lookups, comparing parsing the raw value on every call with a typed {@link OptionKey}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class OptionsBenchmark {
+    private static final String HOMES = "bench.homes";
+    private static final String PREFIX = "bench.prefix";
+
+    private ServerPlayer player;
+    private CommandSourceStack source;
+    private OptionKey<Integer> homes;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StandInLuckPerms.install(0, TimeUnit.MILLISECONDS)
+                .meta(HOMES, "5")
+                .meta(PREFIX, "[Bench]");
+        this.player = Fixtures.player(UUID.randomUUID());
+        this.source = Fixtures.source(this.player);
+        this.homes = Options.intOption(HOMES, 1);
+    }
+
+    @Benchmark
+    public String getRaw() {
+        return Options.get(this.source, PREFIX, "");
+    }
+
+    @Benchmark
+    public Integer getParsed() {
+        return Options.get(this.source, HOMES, 1, Integer::parseInt);
+    }
+
+    @Benchmark
+    public Integer getParsedEntity() {
+        return Options.get(this.player, HOMES, 1, Integer::parseInt);
+    }
+
+    @Benchmark
+    public Integer getKey() {
+        return this.homes.get(this.source);
+    }
+
+    @Benchmark
+    public Map<String, String> getAll() {
+        return Options.getAll(this.source, Arrays.asList(HOMES, PREFIX));
+    }
+}
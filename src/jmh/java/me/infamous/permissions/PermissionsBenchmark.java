@@ -0,0 +1,91 @@
+package me.infamous.permissions;
+
+import me.lucko.fabric.api.permissions.v0.PermissionNode;
+import me.lucko.fabric.api.permissions.v0.Permissions;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.server.level.ServerPlayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Online checks against a warm cache, through each of the entry points mods use.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PermissionsBenchmark {
+    private static final String GRANTED = "bench.command.home";
+    private static final String DENIED = "bench.command.ban";
+    private static final String UNSET = "bench.command.fly";
+
+    private ServerPlayer player;
+    private CommandSourceStack source;
+    private PermissionNode node;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        StandInLuckPerms.install(0, TimeUnit.MILLISECONDS)
+                .grant(GRANTED, true)
+                .grant(DENIED, false);
+        this.player = Fixtures.player(UUID.randomUUID());
+        this.source = Fixtures.source(this.player);
+        this.node = Permissions.node(GRANTED);
+    }
+
+    @Benchmark
+    public boolean checkSource() {
+        return Permissions.check(this.source, GRANTED);
+    }
+
+    @Benchmark
+    public boolean checkSourceDenied() {
+        return Permissions.check(this.source, DENIED, true);
+    }
+
+    @Benchmark
+    public boolean checkSourceUnset() {
+        return Permissions.check(this.source, UNSET, false);
+    }
+
+    @Benchmark
+    public boolean checkEntity() {
+        return Permissions.check(this.player, GRANTED);
+    }
+
+    @Benchmark
+    public boolean checkNode() {
+        return this.node.check(this.source);
+    }
+
+    @Benchmark
+    public boolean checkAll() {
+        return Permissions.checkAll(this.source, GRANTED, DENIED, UNSET);
+    }
+
+    /**
+     * Collects the nodes under a prefix from the cached permission trie.
+     */
+    @Benchmark
+    public Map<String, Boolean> granted() {
+        return Permissions.granted(this.source, "bench.command.");
+    }
+
+    /**
+     * A check that misses the cache every time, as happens after a LuckPerms recalculation.
+     */
+    @Benchmark
+    public boolean checkAfterInvalidate() {
+        PermissionsMod.invalidate(this.player.getUUID());
+        return Permissions.check(this.source, GRANTED);
+    }
+}
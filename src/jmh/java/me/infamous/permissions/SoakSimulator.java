@@ -0,0 +1,467 @@
+package me.infamous.permissions;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import me.lucko.fabric.api.permissions.v0.Options;
+import me.lucko.fabric.api.permissions.v0.Permissions;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraftforge.common.MinecraftForge;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A headless load and soak simulator, run with {@code gradlew soak}.
+ *
+ * <p>Thousands of synthetic players are driven through {@link Permissions} and {@link Options}
+ * against a {@link StandInLuckPerms} with a configurable storage latency, replaying the traffic of
+ * a busy server: login storms through the mod's own login and logout handling, steady play, rank
+ * syncs that recalculate every online player, and mass offline checks. Each scenario reports its throughput, p50/p99/p999 latency, the allocation
+ * rate of the simulated threads and the GC pauses seen while it ran.</p>
+ *
+ * <p>Options are passed as {@code --name value}, or through {@code -PsoakArgs="..."} with Gradle:</p>
+ * <ul>
+ *     <li>{@code --scenarios} the scenarios to run, comma separated (default: all)</li>
+ *     <li>{@code --players} the number of synthetic online players (default: 5000)</li>
+ *     <li>{@code --offline-players} the number of synthetic offline players (default: 20000)</li>
+ *     <li>{@code --threads} the number of simulated caller threads (default: 8)</li>
+ *     <li>{@code --warmup} the warmup of each scenario in seconds (default: 5)</li>
+ *     <li>{@code --duration} the measured duration of each scenario in seconds (default: 30)</li>
+ *     <li>{@code --storage-latency-ms} the simulated latency of loading an offline user (default: 5)</li>
+ *     <li>{@code --sync-interval-ms} how often the rank sync scenario recalculates every player (default: 1000)</li>
+ *     <li>{@code --offline-listener} also listen for {@link OfflinePermissionCheckEvent}, so it is posted (default: false)</li>
+ *     <li>{@code --output} where to write the JSON report (default: build/results/soak/soak.json)</li>
+ * </ul>
+ */
+public final class SoakSimulator {
+    private static final int NODES = 200;
+    private static final int OPTIONS = 20;
+    private static final int LOGIN_CHECKS = 40;
+    private static final int OFFLINE_BATCH = 50;
+    private static final int SUBSCRIBER_EVERY = 10;
+    private static final AtomicLong OFFLINE_EVENTS = new AtomicLong();
+
+    private final Settings settings;
+    private final String[] nodes = new String[NODES];
+    private final String[] options = new String[OPTIONS];
+    private final List<Long> pauses = new ArrayList<>();
+    private ServerPlayer[] players;
+    private CommandSourceStack[] sources;
+    private UUID[] offline;
+    private volatile boolean collectingPauses;
+
+    private SoakSimulator(Settings settings) {
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.parse(args);
+        SoakSimulator simulator = new SoakSimulator(settings);
+        simulator.setup();
+        List<Result> results = new ArrayList<>();
+        for (Scenario scenario : settings.scenarios) {
+            Result result = simulator.run(scenario);
+            System.out.println(result.format());
+            results.add(result);
+        }
+        simulator.write(results);
+    }
+
+    private void setup() {
+        StandInLuckPerms standIn = StandInLuckPerms.install(this.settings.storageLatencyMillis, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < NODES; i++) {
+            this.nodes[i] = "soak.node." + i;
+            // a third of the nodes granted, a third denied and a third left undefined
+            if (i % 3 != 2) standIn.grant(this.nodes[i], i % 3 == 0);
+        }
+        for (int i = 0; i < OPTIONS; i++) {
+            this.options[i] = "soak.option." + i;
+            standIn.meta(this.options[i], Integer.toString(i));
+        }
+        PermissionExecutors.configure(PermissionsConfig.ExecutorType.POOL, 2);
+        // the nodes a login checks are declared, so logging in warms them
+        for (int i = 0; i < LOGIN_CHECKS; i++) {
+            Permissions.declare(this.nodes[i], false);
+        }
+        this.players = Fixtures.players(this.settings.players);
+        this.sources = new CommandSourceStack[this.players.length];
+        for (int i = 0; i < this.players.length; i++) {
+            this.sources[i] = Fixtures.source(this.players[i]);
+            PermissionsMod.login(this.players[i], StandInLuckPerms.provider());
+            if (i % SUBSCRIBER_EVERY == 0) Permissions.subscribe(this.players[i], this.nodes[0], state -> {});
+        }
+        this.offline = new UUID[this.settings.offlinePlayers];
+        for (int i = 0; i < this.offline.length; i++) {
+            this.offline[i] = new UUID(1, i);
+        }
+        if (this.settings.offlineListener) {
+            MinecraftForge.EVENT_BUS.addListener(SoakSimulator::onOfflinePermissionCheck);
+        }
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter) {
+                ((NotificationEmitter) collector).addNotificationListener(this.pauseListener(), null, null);
+            }
+        }
+    }
+
+    private static void onOfflinePermissionCheck(OfflinePermissionCheckEvent event) {
+        OFFLINE_EVENTS.incrementAndGet();
+    }
+
+    private NotificationListener pauseListener() {
+        return (notification, handback) -> {
+            if (!this.collectingPauses || !notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION)) return;
+            GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+            // the cycles of concurrent collectors (ZGC, Shenandoah) are not pauses
+            if (info.getGcName().endsWith("Cycles")) return;
+            synchronized (this.pauses) {
+                this.pauses.add(info.getGcInfo().getDuration());
+            }
+        };
+    }
+
+    private Result run(Scenario scenario) throws InterruptedException {
+        PermissionsMod.invalidateAll();
+        System.gc();
+        Worker[] workers = new Worker[this.settings.threads];
+        Thread background = scenario == Scenario.RANK_SYNC ? this.rankSync() : null;
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(this.settings.warmupSeconds);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(this.settings.durationSeconds);
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(scenario, warmupEnd, end);
+            workers[i].start();
+        }
+        if (background != null) background.start();
+        sleepUntil(warmupEnd);
+        synchronized (this.pauses) {
+            this.pauses.clear();
+        }
+        long events = OFFLINE_EVENTS.get();
+        this.collectingPauses = true;
+        for (Worker worker : workers) {
+            worker.join();
+        }
+        this.collectingPauses = false;
+        if (background != null) {
+            background.interrupt();
+            background.join();
+        }
+        LatencyHistogram latency = new LatencyHistogram();
+        long allocated = 0;
+        for (Worker worker : workers) {
+            latency.add(worker.latency);
+            allocated += worker.allocated;
+        }
+        long[] pauses;
+        synchronized (this.pauses) {
+            pauses = this.pauses.stream().mapToLong(Long::longValue).toArray();
+        }
+        return new Result(scenario, this.settings.durationSeconds, latency, allocated, pauses, OFFLINE_EVENTS.get() - events);
+    }
+
+    private Thread rankSync() {
+        Thread thread = new Thread(() -> {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    Thread.sleep(this.settings.syncIntervalMillis);
+                    // what a LuckPerms network sync does to every online player
+                    for (ServerPlayer player : this.players) {
+                        PermissionsMod.invalidate(player.getUUID());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "soak-rank-sync");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Picks a node, skewed towards the first ones the way a few nodes dominate real traffic.
+     */
+    private String node(ThreadLocalRandom random) {
+        double skewed = random.nextDouble();
+        return this.nodes[(int) (NODES * skewed * skewed * skewed)];
+    }
+
+    private void write(List<Result> results) throws IOException {
+        StringBuilder json = new StringBuilder("{\n  \"settings\": ").append(this.settings.toJson()).append(",\n  \"scenarios\": [\n");
+        for (int i = 0; i < results.size(); i++) {
+            json.append("    ").append(results.get(i).toJson()).append(i + 1 < results.size() ? ",\n" : "\n");
+        }
+        json.append("  ]\n}\n");
+        Path output = this.settings.output;
+        if (output.getParent() != null) Files.createDirectories(output.getParent());
+        Files.writeString(output, json, StandardCharsets.UTF_8);
+        System.out.println("Report written to " + output.toAbsolutePath());
+    }
+
+    private static void sleepUntil(long deadline) throws InterruptedException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+        }
+    }
+
+    enum Scenario {
+        /**
+         * Players reconnecting through the mod's logout and login handling, which warms their
+         * declared nodes and updates their snapshot, subscriptions and online index, then
+         * resolving the nodes and options a login touches.
+         */
+        LOGIN_STORM("login-storm"),
+        /**
+         * Online players checking nodes and reading options, with the odd batch and offline check.
+         */
+        STEADY("steady"),
+        /**
+         * The steady mix while every online player is recalculated at a fixed interval.
+         */
+        RANK_SYNC("rank-sync"),
+        /**
+         * Batches of offline players checked at once, as leaderboards and web panels do.
+         */
+        OFFLINE_MASS("offline-mass");
+
+        private final String id;
+
+        Scenario(String id) {
+            this.id = id;
+        }
+
+        static Scenario byId(String id) {
+            for (Scenario scenario : values()) {
+                if (scenario.id.equals(id)) return scenario;
+            }
+            throw new IllegalArgumentException("Unknown scenario " + id + ", expected one of " + Arrays.toString(Arrays.stream(values()).map(s -> s.id).toArray()));
+        }
+    }
+
+    private final class Worker extends Thread {
+        private final Scenario scenario;
+        private final long warmupEnd;
+        private final long end;
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private long allocated;
+
+        private Worker(Scenario scenario, long warmupEnd, long end) {
+            super("soak-" + scenario.id);
+            this.scenario = scenario;
+            this.warmupEnd = warmupEnd;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            boolean measuring = false;
+            long allocatedAtStart = 0;
+            long now = System.nanoTime();
+            while (now < this.end) {
+                if (!measuring && now >= this.warmupEnd) {
+                    measuring = true;
+                    allocatedAtStart = threads.getCurrentThreadAllocatedBytes();
+                }
+                this.operation(random);
+                long finished = System.nanoTime();
+                if (measuring) this.latency.record(finished - now);
+                now = finished;
+            }
+            if (measuring) this.allocated = threads.getCurrentThreadAllocatedBytes() - allocatedAtStart;
+        }
+
+        private void operation(ThreadLocalRandom random) {
+            switch (this.scenario) {
+                case LOGIN_STORM: this.login(random); break;
+                case STEADY:
+                case RANK_SYNC: this.play(random); break;
+                case OFFLINE_MASS: this.offlineBatch(random); break;
+            }
+        }
+
+        private void login(ThreadLocalRandom random) {
+            int index = random.nextInt(SoakSimulator.this.players.length);
+            ServerPlayer player = SoakSimulator.this.players[index];
+            PermissionsMod.logout(player.getUUID());
+            PermissionsMod.login(player, StandInLuckPerms.provider());
+            CommandSourceStack source = SoakSimulator.this.sources[index];
+            for (int i = 0; i < LOGIN_CHECKS; i++) {
+                Permissions.check(source, SoakSimulator.this.nodes[i], false);
+            }
+            for (String option : SoakSimulator.this.options) {
+                Options.get(source, option);
+            }
+        }
+
+        private void play(ThreadLocalRandom random) {
+            int roll = random.nextInt(100);
+            CommandSourceStack source = SoakSimulator.this.sources[random.nextInt(SoakSimulator.this.sources.length)];
+            if (roll < 80) {
+                Permissions.check(source, SoakSimulator.this.node(random), false);
+            } else if (roll < 92) {
+                Options.get(source, SoakSimulator.this.options[random.nextInt(OPTIONS)]);
+            } else if (roll < 98) {
+                Permissions.getPermissionValues(source, SoakSimulator.this.node(random), SoakSimulator.this.node(random), SoakSimulator.this.node(random));
+            } else {
+                UUID[] offline = SoakSimulator.this.offline;
+                Permissions.check(offline[random.nextInt(offline.length)], SoakSimulator.this.node(random), false).join();
+            }
+        }
+
+        private void offlineBatch(ThreadLocalRandom random) {
+            UUID[] offline = SoakSimulator.this.offline;
+            List<UUID> batch = new ArrayList<>(OFFLINE_BATCH);
+            for (int i = 0; i < OFFLINE_BATCH; i++) {
+                batch.add(offline[random.nextInt(offline.length)]);
+            }
+            Permissions.checkAll(batch, SoakSimulator.this.node(random), false).join();
+        }
+    }
+
+    private static final class Result {
+        private final Scenario scenario;
+        private final int seconds;
+        private final LatencyHistogram latency;
+        private final long allocatedBytes;
+        private final long[] pausesMillis;
+        private final long offlineEvents;
+
+        private Result(Scenario scenario, int seconds, LatencyHistogram latency, long allocatedBytes, long[] pausesMillis, long offlineEvents) {
+            this.scenario = scenario;
+            this.seconds = seconds;
+            this.latency = latency;
+            this.allocatedBytes = allocatedBytes;
+            this.pausesMillis = pausesMillis;
+            this.offlineEvents = offlineEvents;
+        }
+
+        private double throughput() {
+            return this.latency.getCount() / (double) this.seconds;
+        }
+
+        private double allocationRateMb() {
+            return this.allocatedBytes / (double) this.seconds / (1024 * 1024);
+        }
+
+        private long pauseTotal() {
+            return Arrays.stream(this.pausesMillis).sum();
+        }
+
+        private long pauseMax() {
+            return Arrays.stream(this.pausesMillis).max().orElse(0);
+        }
+
+        private String format() {
+            return String.format(Locale.ROOT, "%-13s %,12.0f ops/s  p50 %s  p99 %s  p999 %s  max %s  alloc %,.1f MB/s (%,.0f B/op)  gc %d pauses, %d ms total, %d ms max%s",
+                    this.scenario.id, this.throughput(),
+                    micros(this.latency.getPercentileNanos(0.5)), micros(this.latency.getPercentileNanos(0.99)),
+                    micros(this.latency.getPercentileNanos(0.999)), micros(this.latency.getMaxNanos()),
+                    this.allocationRateMb(), this.latency.getCount() == 0 ? 0 : this.allocatedBytes / (double) this.latency.getCount(),
+                    this.pausesMillis.length, this.pauseTotal(), this.pauseMax(),
+                    this.offlineEvents > 0 ? String.format(Locale.ROOT, "  offline events %,d", this.offlineEvents) : "");
+        }
+
+        private String toJson() {
+            Map<String, Object> values = new HashMap<>();
+            values.put("operations", this.latency.getCount());
+            values.put("throughputPerSecond", this.throughput());
+            values.put("averageNanos", this.latency.getAverageNanos());
+            values.put("p50Nanos", this.latency.getPercentileNanos(0.5));
+            values.put("p99Nanos", this.latency.getPercentileNanos(0.99));
+            values.put("p999Nanos", this.latency.getPercentileNanos(0.999));
+            values.put("maxNanos", this.latency.getMaxNanos());
+            values.put("allocatedBytes", this.allocatedBytes);
+            values.put("allocationRateMbPerSecond", this.allocationRateMb());
+            values.put("gcPauses", this.pausesMillis.length);
+            values.put("gcPauseTotalMillis", this.pauseTotal());
+            values.put("gcPauseMaxMillis", this.pauseMax());
+            values.put("offlineEvents", this.offlineEvents);
+            StringBuilder json = new StringBuilder("{\"scenario\": \"").append(this.scenario.id).append('"');
+            values.entrySet().stream().sorted(Map.Entry.comparingByKey())
+                    .forEach(entry -> json.append(", \"").append(entry.getKey()).append("\": ").append(entry.getValue()));
+            return json.append('}').toString();
+        }
+
+        private static String micros(long nanos) {
+            return String.format(Locale.ROOT, "%,.1fus", nanos / 1000D);
+        }
+    }
+
+    private static final class Settings {
+        private List<Scenario> scenarios = Arrays.asList(Scenario.values());
+        private int players = 5000;
+        private int offlinePlayers = 20000;
+        private int threads = 8;
+        private int warmupSeconds = 5;
+        private int durationSeconds = 30;
+        private int storageLatencyMillis = 5;
+        private int syncIntervalMillis = 1000;
+        private boolean offlineListener;
+        private Path output = Path.of("build", "results", "soak", "soak.json");
+
+        private static Settings parse(String[] args) {
+            Settings settings = new Settings();
+            for (int i = 0; i < args.length; i++) {
+                String name = args[i];
+                if (name.equals("--offline-listener")) {
+                    settings.offlineListener = true;
+                    continue;
+                }
+                if (i + 1 >= args.length) throw new IllegalArgumentException("Missing a value for " + name);
+                String value = args[++i];
+                switch (name) {
+                    case "--scenarios": {
+                        List<Scenario> scenarios = new ArrayList<>();
+                        for (String id : value.split(",")) {
+                            scenarios.add(Scenario.byId(id.trim()));
+                        }
+                        settings.scenarios = scenarios;
+                        break;
+                    }
+                    case "--players": settings.players = positive(name, value); break;
+                    case "--offline-players": settings.offlinePlayers = positive(name, value); break;
+                    case "--threads": settings.threads = positive(name, value); break;
+                    case "--warmup": settings.warmupSeconds = Integer.parseInt(value); break;
+                    case "--duration": settings.durationSeconds = positive(name, value); break;
+                    case "--storage-latency-ms": settings.storageLatencyMillis = Integer.parseInt(value); break;
+                    case "--sync-interval-ms": settings.syncIntervalMillis = positive(name, value); break;
+                    case "--output": settings.output = Path.of(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + name);
+                }
+            }
+            return settings;
+        }
+
+        private static int positive(String name, String value) {
+            int parsed = Integer.parseInt(value);
+            if (parsed <= 0) throw new IllegalArgumentException(name + " must be positive");
+            return parsed;
+        }
+
+        private String toJson() {
+            return String.format(Locale.ROOT, "{\"players\": %d, \"offlinePlayers\": %d, \"threads\": %d, \"warmupSeconds\": %d, \"durationSeconds\": %d, "
+                            + "\"storageLatencyMillis\": %d, \"syncIntervalMillis\": %d, \"offlineListener\": %b}",
+                    this.players, this.offlinePlayers, this.threads, this.warmupSeconds, this.durationSeconds,
+                    this.storageLatencyMillis, this.syncIntervalMillis, this.offlineListener);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package me.infamous.permissions;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.LuckPermsProvider;
+import net.luckperms.api.cacheddata.CachedDataManager;
+import net.luckperms.api.cacheddata.CachedMetaData;
+import net.luckperms.api.cacheddata.CachedPermissionData;
+import net.luckperms.api.model.user.User;
+import net.luckperms.api.model.user.UserManager;
+import net.luckperms.api.platform.PlayerAdapter;
+import net.luckperms.api.util.Tristate;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.loading.FMLLoader;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * A minimal, in-memory LuckPerms installed behind {@link LuckPermsProvider}, so the real
+ * {@link LuckPermsPermissionProvider} can be benchmarked without a running server.
+ *
+ * <p>Every player is granted the same permissions and meta. Only the parts of the API that
+ * the provider touches are implemented; anything else throws.</p>
+ */
+final class StandInLuckPerms {
+    private static final Executor STORAGE = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "stand-in-storage");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final Object UNSUPPORTED = new Object();
+    private static LuckPermsPermissionProvider provider;
+
+    private final Map<String, Tristate> permissions = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> permissionMap = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> meta = new ConcurrentHashMap<>();
+    private final Map<UUID, User> users = new ConcurrentHashMap<>();
+    private final long storageLatencyNanos;
+    private final LuckPerms api;
+
+    private StandInLuckPerms(long storageLatency, TimeUnit unit) {
+        this.storageLatencyNanos = unit.toNanos(storageLatency);
+        CachedPermissionData permissionData = proxy(CachedPermissionData.class, (method, args) -> {
+            switch (method) {
+                case "checkPermission": return this.permissions.getOrDefault((String) args[0], Tristate.UNDEFINED);
+                case "getPermissionMap": return Collections.unmodifiableMap(this.permissionMap);
+                default: return UNSUPPORTED;
+            }
+        });
+        CachedMetaData metaData = proxy(CachedMetaData.class, (method, args) -> {
+            switch (method) {
+                case "getMetaValue": {
+                    List<String> values = this.meta.get((String) args[0]);
+                    return values == null || values.isEmpty() ? null : values.get(0);
+                }
+                case "getMeta": return Collections.unmodifiableMap(this.meta);
+                default: return UNSUPPORTED;
+            }
+        });
+        CachedDataManager cachedData = proxy(CachedDataManager.class, (method, args) -> {
+            switch (method) {
+                case "getPermissionData": return permissionData;
+                case "getMetaData": return metaData;
+                default: return UNSUPPORTED;
+            }
+        });
+        Function<UUID, User> newUser = uuid -> proxy(User.class, (method, args) -> {
+            switch (method) {
+                case "getUniqueId": return uuid;
+                case "getCachedData": return cachedData;
+                default: return UNSUPPORTED;
+            }
+        });
+        PlayerAdapter<?> adapter = proxy(PlayerAdapter.class, (method, args) -> {
+            if (method.equals("getUser")) {
+                UUID uuid = ((net.minecraft.world.entity.Entity) args[0]).getUUID();
+                return this.users.computeIfAbsent(uuid, newUser);
+            }
+            return UNSUPPORTED;
+        });
+        UserManager userManager = proxy(UserManager.class, (method, args) -> {
+            switch (method) {
+                // offline players are never loaded, so every check goes through loadUser
+                case "getUser": return null;
+                case "loadUser": return this.load(newUser.apply((UUID) args[0]));
+                default: return UNSUPPORTED;
+            }
+        });
+        this.api = proxy(LuckPerms.class, (method, args) -> {
+            switch (method) {
+                case "getPlayerAdapter": return adapter;
+                case "getUserManager": return userManager;
+                default: return UNSUPPORTED;
+            }
+        });
+    }
+
+    /**
+     * Installs a stand-in as the LuckPerms instance and registers the built-in provider.
+     *
+     * @param storageLatency the simulated latency of loading an offline user
+     * @param unit the unit of {@code storageLatency}
+     * @return the installed stand-in
+     */
+    static synchronized StandInLuckPerms install(long storageLatency, TimeUnit unit) {
+        StandInLuckPerms standIn = new StandInLuckPerms(storageLatency, unit);
+        try {
+            // FMLEnvironment.dist is read from the loader, and must not be the client for getPerms()
+            set(FMLLoader.class, "dist", Dist.DEDICATED_SERVER);
+            set(LuckPermsProvider.class, "instance", standIn.api);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not install the stand-in LuckPerms", e);
+        }
+        if (provider == null) {
+            provider = new LuckPermsPermissionProvider();
+            PermissionProviders.registerPermissionProvider(provider);
+            PermissionProviders.registerOfflineProvider(provider);
+            PermissionProviders.registerOptionProvider(provider);
+        }
+        PermissionsMod.invalidateAll();
+        return standIn;
+    }
+
+    /**
+     * Gets the provider registered by {@link #install(long, TimeUnit)}.
+     *
+     * @return the provider, or {@code null} if nothing was installed yet
+     */
+    static synchronized LuckPermsPermissionProvider provider() {
+        return provider;
+    }
+
+    StandInLuckPerms grant(String permission, boolean value) {
+        this.permissions.put(permission, Tristate.of(value));
+        this.permissionMap.put(permission, value);
+        return this;
+    }
+
+    StandInLuckPerms meta(String key, String value) {
+        this.meta.put(key, Collections.singletonList(value));
+        return this;
+    }
+
+    private CompletableFuture<User> load(User user) {
+        if (this.storageLatencyNanos <= 0) return CompletableFuture.completedFuture(user);
+        return CompletableFuture.supplyAsync(() -> {
+            long deadline = System.nanoTime() + this.storageLatencyNanos;
+            while (System.nanoTime() < deadline) {
+                Thread.onSpinWait();
+            }
+            return user;
+        }, STORAGE);
+    }
+
+    private static void set(Class<?> owner, String name, Object value) throws ReflectiveOperationException {
+        Field field = owner.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(null, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, Answer answer) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode": if (method.getParameterCount() == 0) return System.identityHashCode(proxy); break;
+                case "equals": if (method.getParameterCount() == 1) return proxy == args[0]; break;
+                case "toString": if (method.getParameterCount() == 0) return "StandIn" + type.getSimpleName(); break;
+            }
+            Object result = answer.answer(method.getName(), args == null ? new Object[0] : args);
+            if (result == UNSUPPORTED) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "#" + method.getName());
+            }
+            return result;
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    @FunctionalInterface
+    private interface Answer {
+        Object answer(String method, Object[] args);
+    }
+}
@@ -0,0 +1,522 @@
+package me.infamous.permissions;
+
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.world.entity.Entity;
+import net.minecraftforge.fml.loading.FMLPaths;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records permission decisions to {@code logs/permissions_api-audit.log}, as configured by the
+ * {@code audit} section of {@link PermissionsConfig}.
+ *
+ * <p>Deciding threads only claim a slot of a preallocated ring buffer with a compare-and-set and
+ * fill it in; they never lock, format or touch the disk. A single writer thread drains the buffer
+ * every {@link PermissionsConfig#AUDIT_FLUSH_INTERVAL flush interval}, formats the batch and appends
+ * it through a {@link FileChannel}, rotating the file once it reaches the configured size.
+ * Decisions made while the buffer is full are dropped and counted rather than waiting for the
+ * writer.</p>
+ *
+ * <p>A decision is the final outcome of a check through {@link me.lucko.fabric.api.permissions.v0.Permissions}
+ * or a {@link me.lucko.fabric.api.permissions.v0.PermissionNode}, after falling back to the default value
+ * or permission level, and is recorded as {@code ALLOWED} or {@code DENIED}. Only denied ones are
+ * recorded unless every decision is. Recording every decision also records each raw state looked
+ * up from the providers, and every option read.</p>
+ */
+public final class AuditLog {
+    private static final String FILE_NAME = PermissionsMod.MODID + "-audit";
+    private static final int BATCH_SIZE = 4096;
+    private static final int MAX_CACHED_RATES = 10000;
+    private static final byte PERMISSION = 0;
+    private static final byte OFFLINE_PERMISSION = 1;
+    private static final byte OPTION = 2;
+    private static final byte CHECK = 3;
+    private static final byte OFFLINE_CHECK = 4;
+    private static final String[] KINDS = {"PERMISSION", "OFFLINE_PERMISSION", "OPTION", "CHECK", "OFFLINE_CHECK"};
+
+    private static final LongAdder RECORDED = new LongAdder();
+    private static final LongAdder DROPPED = new LongAdder();
+    private static final LongAdder WRITTEN = new LongAdder();
+    private static final LongAdder FAILED = new LongAdder();
+
+    @Nullable
+    private static volatile Pipeline pipeline;
+
+    private AuditLog() {
+    }
+
+    /**
+     * Applies the audit config, replacing the running pipeline. Records still buffered by the
+     * previous pipeline are written before it stops.
+     */
+    static synchronized void configure(boolean enabled, PermissionsConfig.AuditDecisions decisions, double sampleRate,
+                                       List<? extends String> rules, int bufferSize, int flushIntervalMillis,
+                                       long maxFileBytes, int maxFiles) {
+        Pipeline previous = pipeline;
+        pipeline = null;
+        if (previous != null) previous.stop();
+        if (!enabled) return;
+        Sampling sampling = Sampling.parse(sampleRate, rules);
+        Path directory = FMLPaths.GAMEDIR.get().resolve("logs");
+        Pipeline started = new Pipeline(decisions == PermissionsConfig.AuditDecisions.ALL, sampling, bufferSize,
+                TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis), new RotatingFile(directory, maxFileBytes, maxFiles));
+        started.start();
+        pipeline = started;
+    }
+
+    /**
+     * Writes everything buffered so far and forces it to disk, waiting at most a few seconds.
+     */
+    static void flush() {
+        Pipeline current = pipeline;
+        if (current != null) current.flush();
+    }
+
+    static void permission(CommandSourceStack source, String permission, Tristate state) {
+        Pipeline current = pipeline;
+        if (current == null || !current.all) return;
+        Entity entity = source.getEntity();
+        current.offer(PERMISSION, JfrEvents.sourceType(source), entity == null ? null : entity.getUUID(), permission, state, null);
+    }
+
+    static void permission(Entity entity, String permission, Tristate state) {
+        Pipeline current = pipeline;
+        if (current == null || !current.all) return;
+        current.offer(PERMISSION, JfrEvents.sourceType(entity), entity.getUUID(), permission, state, null);
+    }
+
+    static void offlinePermission(UUID subject, String permission, @Nullable Tristate state) {
+        Pipeline current = pipeline;
+        if (current == null || !current.all) return;
+        current.offer(OFFLINE_PERMISSION, "offline", subject, permission, state, null);
+    }
+
+    static void check(CommandSourceStack source, String permission, boolean granted) {
+        Pipeline current = pipeline;
+        if (current == null || (granted && !current.all)) return;
+        Entity entity = source.getEntity();
+        current.offer(CHECK, JfrEvents.sourceType(source), entity == null ? null : entity.getUUID(), permission, Tristate.of(granted), null);
+    }
+
+    static void check(Entity entity, String permission, boolean granted) {
+        Pipeline current = pipeline;
+        if (current == null || (granted && !current.all)) return;
+        current.offer(CHECK, JfrEvents.sourceType(entity), entity.getUUID(), permission, Tristate.of(granted), null);
+    }
+
+    static void offlineCheck(UUID subject, String permission, boolean granted) {
+        Pipeline current = pipeline;
+        if (current == null || (granted && !current.all)) return;
+        current.offer(OFFLINE_CHECK, "offline", subject, permission, Tristate.of(granted), null);
+    }
+
+    static void option(CommandSourceStack source, String key, @Nullable String value) {
+        Pipeline current = pipeline;
+        if (current == null || !current.all) return;
+        Entity entity = source.getEntity();
+        current.offer(OPTION, JfrEvents.sourceType(source), entity == null ? null : entity.getUUID(), key, null, value);
+    }
+
+    static void option(Entity entity, String key, @Nullable String value) {
+        Pipeline current = pipeline;
+        if (current == null || !current.all) return;
+        current.offer(OPTION, JfrEvents.sourceType(entity), entity.getUUID(), key, null, value);
+    }
+
+    /**
+     * Checks whether decisions are being recorded, so callers can skip work only needed for the log.
+     *
+     * @return whether the audit log is enabled
+     */
+    static boolean isEnabled() {
+        return pipeline != null;
+    }
+
+    public static long getRecorded() {
+        return RECORDED.sum();
+    }
+
+    /**
+     * Gets the number of decisions dropped because the buffer was full.
+     *
+     * @return the number of dropped decisions
+     */
+    public static long getDropped() {
+        return DROPPED.sum();
+    }
+
+    public static long getWritten() {
+        return WRITTEN.sum();
+    }
+
+    /**
+     * Gets the number of decisions lost because the audit log could not be written.
+     *
+     * @return the number of lost decisions
+     */
+    public static long getFailed() {
+        return FAILED.sum();
+    }
+
+    /**
+     * Clears the recorded, written, dropped and failed counts. Decisions already buffered are
+     * still written.
+     */
+    static void resetStats() {
+        RECORDED.reset();
+        DROPPED.reset();
+        WRITTEN.reset();
+        FAILED.reset();
+    }
+
+    private static final class Pipeline implements Runnable {
+        private final boolean all;
+        private final Sampling sampling;
+        private final long flushIntervalNanos;
+        private final RotatingFile file;
+        private final int capacity;
+        private final int mask;
+        private final long[] times;
+        private final byte[] kinds;
+        private final String[] sourceTypes;
+        private final UUID[] subjects;
+        private final String[] nodes;
+        private final Tristate[] states;
+        private final String[] values;
+        // the sequence + 1 of the record each slot holds, published once the slot is filled in
+        private final AtomicLongArray published;
+        private final AtomicLong claimed = new AtomicLong();
+        private final StringBuilder batch = new StringBuilder();
+        private volatile long drained;
+        private volatile long flushRequested;
+        private volatile long flushed;
+        private volatile boolean running = true;
+        private Thread thread;
+
+        private Pipeline(boolean all, Sampling sampling, int bufferSize, long flushIntervalNanos, RotatingFile file) {
+            this.all = all;
+            this.sampling = sampling;
+            this.flushIntervalNanos = flushIntervalNanos;
+            this.file = file;
+            this.capacity = Integer.highestOneBit(bufferSize - 1) << 1;
+            this.mask = this.capacity - 1;
+            this.times = new long[this.capacity];
+            this.kinds = new byte[this.capacity];
+            this.sourceTypes = new String[this.capacity];
+            this.subjects = new UUID[this.capacity];
+            this.nodes = new String[this.capacity];
+            this.states = new Tristate[this.capacity];
+            this.values = new String[this.capacity];
+            this.published = new AtomicLongArray(this.capacity);
+        }
+
+        private void start() {
+            this.thread = new Thread(this, "PermissionsAPI Audit Writer");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void offer(byte kind, String sourceType, @Nullable UUID subject, String node, @Nullable Tristate state, @Nullable String value) {
+            if (!this.sampling.sample(subject, node)) return;
+            long sequence;
+            do {
+                sequence = this.claimed.get();
+                if (sequence - this.drained >= this.capacity) {
+                    DROPPED.increment();
+                    return;
+                }
+            } while (!this.claimed.compareAndSet(sequence, sequence + 1));
+            int slot = (int) sequence & this.mask;
+            this.times[slot] = System.currentTimeMillis();
+            this.kinds[slot] = kind;
+            this.sourceTypes[slot] = sourceType;
+            this.subjects[slot] = subject;
+            this.nodes[slot] = node;
+            this.states[slot] = state;
+            this.values[slot] = value;
+            this.published.setRelease(slot, sequence + 1);
+            RECORDED.increment();
+        }
+
+        @Override
+        public void run() {
+            while (this.running) {
+                long requested = this.flushRequested;
+                int count = this.drain();
+                if (requested != this.flushed) {
+                    while (count == BATCH_SIZE) {
+                        count = this.drain();
+                    }
+                    this.file.force();
+                    this.flushed = requested;
+                }
+                // a full batch means the buffer is filling up, so keep draining without waiting
+                if (count < BATCH_SIZE) LockSupport.parkNanos(this, this.flushIntervalNanos);
+            }
+            while (this.drain() > 0) {
+                // write whatever was published before the pipeline stopped
+            }
+            this.file.close();
+        }
+
+        /**
+         * Drains up to one batch of published records and appends them to the file.
+         *
+         * @return the number of drained records
+         */
+        private int drain() {
+            long sequence = this.drained;
+            int count = 0;
+            StringBuilder batch = this.batch;
+            batch.setLength(0);
+            while (count < BATCH_SIZE) {
+                int slot = (int) sequence & this.mask;
+                if (this.published.getAcquire(slot) != sequence + 1) break;
+                this.format(slot, batch);
+                this.sourceTypes[slot] = null;
+                this.subjects[slot] = null;
+                this.nodes[slot] = null;
+                this.states[slot] = null;
+                this.values[slot] = null;
+                sequence++;
+                count++;
+            }
+            if (count == 0) return 0;
+            this.drained = sequence;
+            if (this.file.write(batch)) {
+                WRITTEN.add(count);
+            } else {
+                FAILED.add(count);
+            }
+            return count;
+        }
+
+        private void format(int slot, StringBuilder line) {
+            line.append(Instant.ofEpochMilli(this.times[slot])).append('\t')
+                    .append(KINDS[this.kinds[slot]]).append('\t')
+                    .append(this.sourceTypes[slot]).append('\t')
+                    .append(this.subjects[slot] == null ? "-" : this.subjects[slot].toString()).append('\t');
+            escape(this.nodes[slot], line);
+            line.append('\t');
+            if (this.kinds[slot] == OPTION) {
+                if (this.values[slot] == null) {
+                    line.append("ABSENT");
+                } else {
+                    line.append('=');
+                    escape(this.values[slot], line);
+                }
+            } else if (this.kinds[slot] == CHECK || this.kinds[slot] == OFFLINE_CHECK) {
+                line.append(this.states[slot] == Tristate.TRUE ? "ALLOWED" : "DENIED");
+            } else {
+                line.append(this.states[slot] == null ? "ERROR" : this.states[slot].name());
+            }
+            line.append('\n');
+        }
+
+        private void flush() {
+            if (Thread.currentThread() == this.thread) return;
+            long requested;
+            synchronized (this) {
+                requested = ++this.flushRequested;
+            }
+            LockSupport.unpark(this.thread);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (this.flushed - requested < 0 && this.running && System.nanoTime() < deadline) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+
+        private void stop() {
+            this.running = false;
+            LockSupport.unpark(this.thread);
+            try {
+                this.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private static void escape(String text, StringBuilder into) {
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                into.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+            }
+        }
+    }
+
+    /**
+     * Decides which decisions are recorded. Rates of nodes are resolved once and cached, so
+     * sampling a decision is a map lookup.
+     */
+    private static final class Sampling {
+        private final float defaultRate;
+        private final Map<UUID, Float> players;
+        private final String[] prefixes;
+        private final float[] prefixRates;
+        private final ConcurrentHashMap<String, Float> nodeRates = new ConcurrentHashMap<>();
+
+        private Sampling(float defaultRate, Map<UUID, Float> players, String[] prefixes, float[] prefixRates) {
+            this.defaultRate = defaultRate;
+            this.players = players;
+            this.prefixes = prefixes;
+            this.prefixRates = prefixRates;
+        }
+
+        private static Sampling parse(double defaultRate, List<? extends String> rules) {
+            Map<UUID, Float> players = new HashMap<>();
+            List<String> prefixes = new ArrayList<>();
+            List<Float> prefixRates = new ArrayList<>();
+            for (String rule : rules) {
+                int equals = rule.lastIndexOf('=');
+                int colon = rule.indexOf(':');
+                try {
+                    if (equals < 0 || colon < 0 || colon > equals) throw new IllegalArgumentException("expected <type>:<target>=<rate>");
+                    String type = rule.substring(0, colon);
+                    String target = rule.substring(colon + 1, equals);
+                    float rate = Float.parseFloat(rule.substring(equals + 1));
+                    if (!(rate >= 0 && rate <= 1)) throw new IllegalArgumentException("the rate must be between 0 and 1");
+                    if (type.equals("player")) {
+                        players.put(UUID.fromString(target), rate);
+                    } else if (type.equals("node")) {
+                        prefixes.add(target);
+                        prefixRates.add(rate);
+                    } else {
+                        throw new IllegalArgumentException("unknown type " + type);
+                    }
+                } catch (IllegalArgumentException e) {
+                    PermissionsMod.LOGGER.warn("Ignoring audit sampling rule \"{}\": {}", rule, e.getMessage());
+                }
+            }
+            float[] rates = new float[prefixRates.size()];
+            for (int i = 0; i < rates.length; i++) {
+                rates[i] = prefixRates.get(i);
+            }
+            return new Sampling((float) defaultRate, Map.copyOf(players), prefixes.toArray(new String[0]), rates);
+        }
+
+        private boolean sample(@Nullable UUID subject, String node) {
+            Float rate = subject == null || this.players.isEmpty() ? null : this.players.get(subject);
+            if (rate == null) rate = this.rate(node);
+            if (rate >= 1) return true;
+            if (rate <= 0) return false;
+            return ThreadLocalRandom.current().nextFloat() < rate;
+        }
+
+        private float rate(String node) {
+            if (this.prefixes.length == 0) return this.defaultRate;
+            Float rate = this.nodeRates.get(node);
+            if (rate != null) return rate;
+            float resolved = this.defaultRate;
+            int longest = -1;
+            for (int i = 0; i < this.prefixes.length; i++) {
+                if (this.prefixes[i].length() > longest && node.startsWith(this.prefixes[i])) {
+                    longest = this.prefixes[i].length();
+                    resolved = this.prefixRates[i];
+                }
+            }
+            if (this.nodeRates.size() >= MAX_CACHED_RATES) this.nodeRates.clear();
+            this.nodeRates.put(node, resolved);
+            return resolved;
+        }
+    }
+
+    /**
+     * The audit log file, only ever used by the writer thread.
+     */
+    private static final class RotatingFile {
+        private final Path directory;
+        private final long maxBytes;
+        private final int maxFiles;
+        @Nullable
+        private FileChannel channel;
+        private long size;
+        private boolean failing;
+
+        private RotatingFile(Path directory, long maxBytes, int maxFiles) {
+            this.directory = directory;
+            this.maxBytes = maxBytes;
+            this.maxFiles = maxFiles;
+        }
+
+        private boolean write(CharSequence text) {
+            ByteBuffer bytes = StandardCharsets.UTF_8.encode(CharBuffer.wrap(text));
+            try {
+                if (this.channel != null && this.size + bytes.remaining() > this.maxBytes) this.rotate();
+                if (this.channel == null) this.open();
+                FileChannel channel = Objects.requireNonNull(this.channel);
+                while (bytes.hasRemaining()) {
+                    this.size += channel.write(bytes);
+                }
+                this.failing = false;
+                return true;
+            } catch (IOException e) {
+                // log once per outage rather than once per batch
+                if (!this.failing) PermissionsMod.LOGGER.error("Failed to write the permissions audit log", e);
+                this.failing = true;
+                this.close();
+                return false;
+            }
+        }
+
+        private void open() throws IOException {
+            Files.createDirectories(this.directory);
+            this.channel = FileChannel.open(this.path(0), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            this.size = this.channel.size();
+        }
+
+        private void rotate() throws IOException {
+            this.close();
+            Files.deleteIfExists(this.path(this.maxFiles));
+            for (int i = this.maxFiles - 1; i >= 0; i--) {
+                Path from = this.path(i);
+                if (Files.exists(from)) Files.move(from, this.path(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        private Path path(int index) {
+            return this.directory.resolve(index == 0 ? FILE_NAME + ".log" : FILE_NAME + "." + index + ".log");
+        }
+
+        private void force() {
+            if (this.channel == null) return;
+            try {
+                this.channel.force(false);
+            } catch (IOException e) {
+                PermissionsMod.LOGGER.error("Failed to flush the permissions audit log", e);
+            }
+        }
+
+        private void close() {
+            if (this.channel == null) return;
+            try {
+                this.channel.close();
+            } catch (IOException e) {
+                PermissionsMod.LOGGER.error("Failed to close the permissions audit log", e);
+            }
+            this.channel = null;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package me.infamous.permissions;
+
+/**
+ * A subscription to changes of a permission or option, returned by
+ * {@link me.lucko.fabric.api.permissions.v0.Permissions#subscribe(java.util.UUID, String, java.util.function.Consumer)}
+ * and {@link me.lucko.fabric.api.permissions.v0.Options#subscribe(java.util.UUID, String, java.util.function.Consumer)}.
+ */
+public interface ChangeSubscription extends AutoCloseable {
+
+    /**
+     * Gets whether the subscription is still active.
+     *
+     * @return whether the listener will still be called
+     */
+    boolean isActive();
+
+    /**
+     * Stops calling the listener. Closing a closed subscription does nothing.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,172 @@
+package me.infamous.permissions;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+
+import javax.annotation.Nullable;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Calls {@link ChangeSubscription subscribers} when the value of a permission or option changes
+ * for a player.
+ *
+ * <p>Players are marked when they are {@link PermissionsMod#invalidate(UUID) invalidated}, which
+ * can happen on any thread and many times a tick. At the end of the server tick each marked
+ * player's subscriptions are evaluated once, and listeners are only called, on the server thread,
+ * if the value differs from the one they last saw.</p>
+ */
+final class ChangeSubscriptions {
+    private final ConcurrentHashMap<UUID, CopyOnWriteArrayList<Subscription<?>>> subscriptions = new ConcurrentHashMap<>();
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+
+    ChangeSubscription subscribePermission(UUID uuid, String permission, Consumer<Tristate> listener, @Nullable ServerPlayer player) {
+        return this.subscribe(new Subscription<>(uuid, listener, online -> PermissionProviders.getPermissionValue(online, permission),
+                (server, subscription) -> PermissionProviders.getPermissionValue(uuid, permission)
+                        .thenAccept(state -> server.execute(() -> subscription.accept(state)))), player);
+    }
+
+    ChangeSubscription subscribeOption(UUID uuid, String key, Consumer<Optional<String>> listener, @Nullable ServerPlayer player) {
+        // options can only be resolved for online players, so offline changes are seen on login
+        return this.subscribe(new Subscription<>(uuid, listener, online -> PermissionProviders.getOption(online, key), null), player);
+    }
+
+    void markDirty(UUID uuid) {
+        if (this.subscriptions.containsKey(uuid)) this.pending.add(uuid);
+    }
+
+    void markAllDirty() {
+        this.pending.addAll(this.subscriptions.keySet());
+    }
+
+    /**
+     * Forgets the online values permission subscribers of a player last saw, as offline values
+     * lack the player's contexts and must not be compared with them. The first offline
+     * evaluation sets a new baseline instead. Options are only resolved online, so their last
+     * value is kept to report what changed while the player was away. Must be called on the
+     * server thread.
+     */
+    void logout(UUID uuid) {
+        this.pending.remove(uuid);
+        CopyOnWriteArrayList<Subscription<?>> subscriptions = this.subscriptions.get(uuid);
+        if (subscriptions == null) return;
+        for (Subscription<?> subscription : subscriptions) {
+            if (subscription.offline != null) subscription.last = null;
+        }
+    }
+
+    /**
+     * Evaluates the subscriptions of every marked player. Must be called on the server thread.
+     */
+    void deliver(MinecraftServer server) {
+        if (this.pending.isEmpty()) return;
+        Iterator<UUID> iterator = this.pending.iterator();
+        while (iterator.hasNext()) {
+            UUID uuid = iterator.next();
+            iterator.remove();
+            CopyOnWriteArrayList<Subscription<?>> subscriptions = this.subscriptions.get(uuid);
+            if (subscriptions == null) continue;
+            ServerPlayer player = server.getPlayerList().getPlayer(uuid);
+            for (Subscription<?> subscription : subscriptions) {
+                subscription.evaluate(server, player);
+            }
+        }
+    }
+
+    void clear() {
+        this.subscriptions.values().forEach(subscriptions -> subscriptions.forEach(Subscription::deactivate));
+        this.subscriptions.clear();
+        this.pending.clear();
+    }
+
+    private ChangeSubscription subscribe(Subscription<?> subscription, @Nullable ServerPlayer player) {
+        this.subscriptions.computeIfAbsent(subscription.uuid, k -> new CopyOnWriteArrayList<>()).add(subscription);
+        if (player != null) {
+            subscription.refresh(player);
+        } else {
+            this.pending.add(subscription.uuid);
+        }
+        return subscription;
+    }
+
+    private void remove(Subscription<?> subscription) {
+        this.subscriptions.computeIfPresent(subscription.uuid, (uuid, subscriptions) -> {
+            subscriptions.remove(subscription);
+            return subscriptions.isEmpty() ? null : subscriptions;
+        });
+    }
+
+    @FunctionalInterface
+    private interface OfflineResolver<T> {
+        void resolve(MinecraftServer server, Subscription<T> subscription);
+    }
+
+    private final class Subscription<T> implements ChangeSubscription {
+        private final UUID uuid;
+        private final Consumer<T> listener;
+        private final Function<ServerPlayer, T> online;
+        @Nullable
+        private final OfflineResolver<T> offline;
+        private volatile boolean active = true;
+        /**
+         * The value the listener last saw, or {@code null} before the first evaluation. Only
+         * accessed on the server thread once the subscription is registered.
+         */
+        @Nullable
+        private T last;
+
+        private Subscription(UUID uuid, Consumer<T> listener, Function<ServerPlayer, T> online, @Nullable OfflineResolver<T> offline) {
+            this.uuid = uuid;
+            this.listener = listener;
+            this.online = online;
+            this.offline = offline;
+        }
+
+        private void evaluate(MinecraftServer server, @Nullable ServerPlayer player) {
+            if (player != null) {
+                this.refresh(player);
+            } else if (this.offline != null) {
+                this.offline.resolve(server, this);
+            }
+        }
+
+        private void refresh(ServerPlayer player) {
+            this.accept(this.online.apply(player));
+        }
+
+        private void accept(T value) {
+            if (!this.active) return;
+            T previous = this.last;
+            this.last = value;
+            if (previous == null || Objects.equals(previous, value)) return;
+            try {
+                this.listener.accept(value);
+            } catch (RuntimeException e) {
+                PermissionsMod.LOGGER.error("Error in permission change listener for {}", this.uuid, e);
+            }
+        }
+
+        private void deactivate() {
+            this.active = false;
+        }
+
+        @Override
+        public boolean isActive() {
+            return this.active;
+        }
+
+        @Override
+        public void close() {
+            if (!this.active) return;
+            this.active = false;
+            ChangeSubscriptions.this.remove(this);
+        }
+    }
+}
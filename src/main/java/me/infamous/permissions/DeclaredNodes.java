@@ -0,0 +1,126 @@
+package me.infamous.permissions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The nodes mods have declared through {@link me.lucko.fabric.api.permissions.v0.Permissions#declare(String, boolean)}.
+ * Their defaults are not kept here, as they live in the {@link me.lucko.fabric.api.permissions.v0.PermissionNode}
+ * handle that {@code declare} returns.
+ *
+ * <p>Declared nodes are resolved for each player as they log in, so their first checks are
+ * already cached, and are used to point out checked nodes that look misspelled.</p>
+ */
+final class DeclaredNodes {
+    private static final int MAX_SUGGESTION_DISTANCE = 2;
+
+    private final Set<String> declared = ConcurrentHashMap.newKeySet();
+    private volatile String[] nodes = new String[0];
+    private int reported;
+
+    void declare(String permission) {
+        if (this.declared.add(permission)) {
+            synchronized (this) {
+                String[] nodes = Arrays.copyOf(this.nodes, this.nodes.length + 1);
+                nodes[nodes.length - 1] = permission;
+                this.nodes = nodes;
+            }
+        }
+    }
+
+    boolean isDeclared(String permission) {
+        return this.declared.contains(permission);
+    }
+
+    String[] nodes() {
+        return this.nodes;
+    }
+
+    /**
+     * {@link #report(Iterable) Reports} the nodes seen since the previous call, so nodes that
+     * are first checked after the server started are pointed out too. Only called on the
+     * server thread.
+     *
+     * @param known every node seen so far, in the order they were first seen
+     */
+    void reportNew(List<String> known) {
+        int size = known.size();
+        if (size <= this.reported) return;
+        this.report(known.subList(this.reported, size));
+        this.reported = size;
+    }
+
+    /**
+     * Logs the known nodes that were not declared, for namespaces (first segments) in which
+     * something was declared, suggesting the closest declared node when there is one.
+     *
+     * @param known the nodes that are checked, for example by commands
+     */
+    void report(Iterable<String> known) {
+        String[] declared = this.nodes;
+        if (declared.length == 0) return;
+        Set<String> namespaces = new HashSet<>();
+        for (String node : declared) {
+            namespaces.add(namespace(node));
+        }
+        List<String> undeclared = new ArrayList<>();
+        for (String node : known) {
+            if (!this.isDeclared(node) && namespaces.contains(namespace(node)) && !node.endsWith("*")) {
+                undeclared.add(node);
+            }
+        }
+        for (String node : undeclared) {
+            String closest = closest(node, declared);
+            if (closest != null) {
+                PermissionsMod.LOGGER.warn("Permission node {} is checked but was not declared, did you mean {}?", node, closest);
+            } else {
+                PermissionsMod.LOGGER.warn("Permission node {} is checked but was not declared", node);
+            }
+        }
+    }
+
+    private static String namespace(String node) {
+        int dot = node.indexOf('.');
+        return dot < 0 ? node : node.substring(0, dot);
+    }
+
+    private static String closest(String node, String[] declared) {
+        String closest = null;
+        int best = MAX_SUGGESTION_DISTANCE + 1;
+        for (String candidate : declared) {
+            if (Math.abs(candidate.length() - node.length()) >= best) continue;
+            int distance = distance(node, candidate);
+            if (distance < best) {
+                best = distance;
+                closest = candidate;
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * The Levenshtein distance between two strings.
+     */
+    private static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,180 @@
+package me.infamous.permissions;
+
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Emits the Flight Recorder events of this mod.
+ *
+ * <p>Events are only created while a recording is running and {@link PermissionsConfig#JFR_ENABLED}
+ * is set, so there is nothing to pay for otherwise. Thresholds and the summary period are the
+ * usual JFR {@code threshold} and {@code period} settings of each event, and can be changed per
+ * recording, for example with {@code permissions_api.PermissionCheck#threshold=0 ms}.</p>
+ */
+final class JfrEvents {
+    private static volatile boolean enabled = true;
+    private static volatile boolean recording;
+    private static volatile int summaryNodes = 20;
+    private static long[] lastChecks = new long[0];
+    private static long[] lastNanos = new long[0];
+
+    private JfrEvents() {
+    }
+
+    /**
+     * Starts following recordings. If the Flight Recorder is not available, for example on a
+     * runtime built without the {@code jdk.jfr} module, the events stay disabled for the session.
+     */
+    static void init() {
+        try {
+            if (!FlightRecorder.isAvailable()) {
+                PermissionsMod.LOGGER.info("Java Flight Recorder is not available, Permissions API JFR events are disabled");
+                return;
+            }
+            FlightRecorder.addListener(new FlightRecorderListener() {
+                @Override
+                public void recordingStateChanged(Recording changed) {
+                    JfrEvents.updateRecording();
+                }
+            });
+            FlightRecorder.addPeriodicEvent(JfrNodeFrequency.class, JfrEvents::emitNodeFrequencies);
+            // recordings started from the command line are running before the listener is added
+            if (FlightRecorder.isInitialized()) {
+                updateRecording();
+            }
+        } catch (Throwable t) {
+            recording = false;
+            PermissionsMod.LOGGER.warn("Could not set up Java Flight Recorder, Permissions API JFR events are disabled", t);
+        }
+    }
+
+    static void configure(boolean enabled, int summaryNodes) {
+        JfrEvents.enabled = enabled;
+        JfrEvents.summaryNodes = summaryNodes;
+    }
+
+    @Nullable
+    static JfrPermissionCheck beginPermissionCheck() {
+        if (!enabled || !recording) return null;
+        JfrPermissionCheck event = new JfrPermissionCheck();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    static void commit(JfrPermissionCheck event, String node, String sourceType, Tristate result, boolean cached) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.node = node;
+        event.sourceType = sourceType;
+        event.result = result.name();
+        event.cached = cached;
+        event.commit();
+    }
+
+    @Nullable
+    static JfrOfflinePermissionCheck beginOfflinePermissionCheck() {
+        if (!enabled || !recording) return null;
+        JfrOfflinePermissionCheck event = new JfrOfflinePermissionCheck();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    static void commit(JfrOfflinePermissionCheck event, String node, @Nullable Tristate result, boolean cached) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.node = node;
+        event.sourceType = "offline";
+        event.result = result == null ? "ERROR" : result.name();
+        event.cached = cached;
+        event.commit();
+    }
+
+    @Nullable
+    static JfrOptionRead beginOptionRead() {
+        if (!enabled || !recording) return null;
+        JfrOptionRead event = new JfrOptionRead();
+        if (!event.isEnabled()) return null;
+        event.begin();
+        return event;
+    }
+
+    static void commit(JfrOptionRead event, String key, String sourceType, boolean present) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.key = key;
+        event.sourceType = sourceType;
+        event.result = present ? "PRESENT" : "ABSENT";
+        event.cached = false;
+        event.commit();
+    }
+
+    static String sourceType(CommandSourceStack source) {
+        Entity entity = source.getEntity();
+        return entity == null ? "server" : sourceType(entity);
+    }
+
+    static String sourceType(Entity entity) {
+        return entity instanceof ServerPlayer ? "player" : "entity";
+    }
+
+    /**
+     * Checks whether the state of a node is already cached for the given source, without
+     * caching anything.
+     */
+    static boolean isCached(@Nullable Entity entity, int id, String permission) {
+        if (!(entity instanceof ServerPlayer)) return false;
+        PermissionCache.Entry cached = PermissionsMod.PERMISSION_CACHE.peek(entity.getUUID());
+        return cached != null && cached.get(id, permission) != null;
+    }
+
+    private static void updateRecording() {
+        boolean running = false;
+        for (Recording recording : FlightRecorder.getFlightRecorder().getRecordings()) {
+            if (recording.getState() == RecordingState.RUNNING) {
+                running = true;
+                break;
+            }
+        }
+        recording = running;
+    }
+
+    /**
+     * Emits the nodes checked most since the previous period. Only ever called by the
+     * Flight Recorder's periodic task thread.
+     */
+    private static void emitNodeFrequencies() {
+        List<JfrNodeFrequency> events = new ArrayList<>();
+        PermissionMetrics.visitNodes((id, checks, totalNanos) -> {
+            if (id >= lastChecks.length) {
+                lastChecks = Arrays.copyOf(lastChecks, Math.max(lastChecks.length * 2, id + 1));
+                lastNanos = Arrays.copyOf(lastNanos, lastChecks.length);
+            }
+            long delta = checks - lastChecks[id];
+            if (delta > 0 && enabled) {
+                JfrNodeFrequency event = new JfrNodeFrequency();
+                event.node = NodeKeys.key(id);
+                event.checks = delta;
+                event.totalTime = Math.max(0, totalNanos - lastNanos[id]);
+                events.add(event);
+            }
+            lastChecks[id] = checks;
+            lastNanos[id] = totalNanos;
+        });
+        events.sort((a, b) -> Long.compare(b.checks, a.checks));
+        for (int i = 0; i < events.size() && i < summaryNodes; i++) {
+            events.get(i).commit();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package me.infamous.permissions;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Emitted periodically for each of the most checked nodes, with the number of checks since
+ * the previous period. Counts come from {@link PermissionMetrics}, so nothing is emitted while
+ * metrics are disabled.
+ */
+@Name("permissions_api.NodeFrequency")
+@Label("Permission Node Frequency")
+@Description("How often a node was checked since the previous period")
+@Category({"Minecraft", "Permissions API"})
+@Period("60 s")
+@StackTrace(false)
+public final class JfrNodeFrequency extends jdk.jfr.Event {
+    @Label("Node")
+    String node;
+
+    @Label("Checks")
+    long checks;
+
+    @Label("Total Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long totalTime;
+}
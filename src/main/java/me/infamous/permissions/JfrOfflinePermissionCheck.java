@@ -0,0 +1,33 @@
+package me.infamous.permissions;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded when an offline permission check completes later than the recording's threshold,
+ * timed from the call until its future completes.
+ */
+@Name("permissions_api.OfflinePermissionCheck")
+@Label("Offline Permission Check")
+@Description("An offline permission check, from the call until its future completed")
+@Category({"Minecraft", "Permissions API"})
+@Threshold("20 ms")
+@StackTrace(false)
+public final class JfrOfflinePermissionCheck extends jdk.jfr.Event {
+    @Label("Node")
+    String node;
+
+    @Label("Source Type")
+    String sourceType;
+
+    @Label("Result")
+    String result;
+
+    @Label("Cached")
+    @Description("Whether the result was already known when the check was made")
+    boolean cached;
+}
@@ -0,0 +1,33 @@
+package me.infamous.permissions;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded for option reads that take longer than the recording's threshold. Reads of typed
+ * options served from the option cache never reach the provider chain and are not recorded.
+ */
+@Name("permissions_api.OptionRead")
+@Label("Option Read")
+@Description("An option read resolved through the provider chain")
+@Category({"Minecraft", "Permissions API"})
+@Threshold("1 ms")
+@StackTrace(false)
+public final class JfrOptionRead extends jdk.jfr.Event {
+    @Label("Key")
+    String key;
+
+    @Label("Source Type")
+    String sourceType;
+
+    @Label("Result")
+    @Description("Whether a value was found")
+    String result;
+
+    @Label("Cached")
+    boolean cached;
+}
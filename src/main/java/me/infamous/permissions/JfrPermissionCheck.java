@@ -0,0 +1,32 @@
+package me.infamous.permissions;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Recorded for online permission checks that take longer than the recording's threshold.
+ */
+@Name("permissions_api.PermissionCheck")
+@Label("Permission Check")
+@Description("An online permission check resolved through the provider chain")
+@Category({"Minecraft", "Permissions API"})
+@Threshold("1 ms")
+@StackTrace(false)
+public final class JfrPermissionCheck extends jdk.jfr.Event {
+    @Label("Node")
+    String node;
+
+    @Label("Source Type")
+    String sourceType;
+
+    @Label("Result")
+    String result;
+
+    @Label("Cached")
+    @Description("Whether the result was already cached for the player")
+    boolean cached;
+}
@@ -0,0 +1,110 @@
+package me.infamous.permissions;
+
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The built-in provider used when LuckPerms is not installed, backed by {@link LocalPermissions}.
+ *
+ * <p>Every answer is a lookup in an immutable trie or map, so nothing is cached per player and
+ * offline checks complete immediately.</p>
+ */
+class LocalPermissionProvider implements PermissionProvider, OfflinePermissionProvider, OptionProvider {
+    private final LocalPermissions permissions;
+
+    LocalPermissionProvider(LocalPermissions permissions) {
+        this.permissions = permissions;
+    }
+
+    @Override
+    public Tristate getPermissionValue(CommandSourceStack source, String permission) {
+        ServerPlayer player = source.getPlayer();
+        if(player == null) return Tristate.UNDEFINED;
+        return this.permissions.subject(player.getUUID()).getTrie().getValue(permission);
+    }
+
+    @Override
+    public Tristate getPermissionValue(Entity entity, String permission) {
+        if(!(entity instanceof ServerPlayer)) return Tristate.UNDEFINED;
+        return this.permissions.subject(entity.getUUID()).getTrie().getValue(permission);
+    }
+
+    @Override
+    public Tristate[] getPermissionValues(CommandSourceStack source, String[] permissions) {
+        Tristate[] states = new Tristate[permissions.length];
+        ServerPlayer player = source.getPlayer();
+        PermissionTrie trie = player == null ? null : this.permissions.subject(player.getUUID()).getTrie();
+        for (int i = 0; i < permissions.length; i++) {
+            states[i] = trie == null ? Tristate.UNDEFINED : trie.getValue(permissions[i]);
+        }
+        return states;
+    }
+
+    @Override
+    public Map<String, Boolean> getPermissionsByPrefix(CommandSourceStack source, String prefix) {
+        ServerPlayer player = source.getPlayer();
+        if(player == null) return Collections.emptyMap();
+        Map<String, Boolean> values = new HashMap<>();
+        this.permissions.subject(player.getUUID()).getTrie().collect(prefix, values);
+        return values;
+    }
+
+    @Override
+    public CompletableFuture<Tristate> getPermissionValue(UUID uuid, String permission) {
+        return CompletableFuture.completedFuture(this.permissions.subject(uuid).getTrie().getValue(permission));
+    }
+
+    @Override
+    public CompletableFuture<Tristate[]> getPermissionValues(UUID uuid, String[] permissions) {
+        PermissionTrie trie = this.permissions.subject(uuid).getTrie();
+        Tristate[] states = new Tristate[permissions.length];
+        for (int i = 0; i < permissions.length; i++) {
+            states[i] = trie.getValue(permissions[i]);
+        }
+        return CompletableFuture.completedFuture(states);
+    }
+
+    @Nullable
+    @Override
+    public String getOption(CommandSourceStack source, String key) {
+        ServerPlayer player = source.getPlayer();
+        if(player == null) return null;
+        return this.permissions.subject(player.getUUID()).getMeta(key);
+    }
+
+    @Nullable
+    @Override
+    public String getOption(Entity entity, String key) {
+        if(!(entity instanceof ServerPlayer)) return null;
+        return this.permissions.subject(entity.getUUID()).getMeta(key);
+    }
+
+    @Override
+    public Map<String, String> getOptions(CommandSourceStack source, Collection<String> keys) {
+        ServerPlayer player = source.getPlayer();
+        if(player == null) return Collections.emptyMap();
+        LocalPermissions.Subject subject = this.permissions.subject(player.getUUID());
+        Map<String, String> values = new HashMap<>();
+        for (String key : keys) {
+            String value = subject.getMeta(key);
+            if(value != null) values.put(key, value);
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, String> getAllOptions(CommandSourceStack source) {
+        ServerPlayer player = source.getPlayer();
+        if(player == null) return Collections.emptyMap();
+        return this.permissions.subject(player.getUUID()).getMeta();
+    }
+}
@@ -0,0 +1,267 @@
+package me.infamous.permissions;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The permissions, groups and meta of the built-in engine, used when LuckPerms is not installed.
+ *
+ * <p>The file is read into one immutable {@link Subject} per user, with the permissions of its
+ * groups already merged into a {@link PermissionTrie}, so checks never walk the inheritance tree.
+ * A reload builds a complete new state and swaps it in with a single volatile write; readers see
+ * either the old state or the new one, never a mix.</p>
+ *
+ * <pre>{@code
+ * {
+ *   "groups": {
+ *     "default": {"permissions": {"mymod.use": true}, "meta": {"homes": "1"}},
+ *     "vip": {"inherits": ["default"], "permissions": {"mymod.fly.*": true}, "meta": {"homes": "5"}}
+ *   },
+ *   "users": {
+ *     "<uuid>": {"groups": ["vip"], "permissions": {"mymod.fly.nether": false}, "meta": {}}
+ *   }
+ * }
+ * }</pre>
+ *
+ * <p>Every user inherits {@code default}. A user's own nodes and meta win over their groups',
+ * and the groups listed first win over the ones listed after them.</p>
+ */
+final class LocalPermissions {
+    static final String DEFAULT_GROUP = "default";
+    private static final String DEFAULT_FILE = "{\n"
+            + "  \"groups\": {\n"
+            + "    \"default\": {\n"
+            + "      \"permissions\": {},\n"
+            + "      \"meta\": {}\n"
+            + "    }\n"
+            + "  },\n"
+            + "  \"users\": {}\n"
+            + "}\n";
+
+    private final Path path;
+    private volatile State state = State.EMPTY;
+
+    LocalPermissions(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Gets the subject of a user, which is the {@code default} group for users not in the file.
+     *
+     * @param uuid the user uuid
+     * @return the subject
+     */
+    Subject subject(UUID uuid) {
+        State state = this.state;
+        Subject subject = state.users.get(uuid);
+        return subject != null ? subject : state.defaults;
+    }
+
+    /**
+     * Reads the file again and swaps the new state in, writing a default file first if there is none.
+     * If the file cannot be read or parsed, the current state is kept.
+     *
+     * @return {@code true} if the new state was swapped in
+     */
+    boolean reload() {
+        try {
+            if (Files.notExists(this.path)) {
+                Files.createDirectories(this.path.getParent());
+                Files.writeString(this.path, DEFAULT_FILE, StandardCharsets.UTF_8);
+            }
+            JsonElement root;
+            try (Reader reader = Files.newBufferedReader(this.path, StandardCharsets.UTF_8)) {
+                root = JsonParser.parseReader(reader);
+            }
+            if (!root.isJsonObject()) throw new JsonParseException("Expected an object at the root");
+            this.state = State.parse(root.getAsJsonObject());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            PermissionsMod.LOGGER.error("Failed to load built-in permissions from {}, keeping the previous ones", this.path, e);
+            return false;
+        }
+    }
+
+    Path getPath() {
+        return this.path;
+    }
+
+    int size() {
+        return this.state.users.size();
+    }
+
+    /**
+     * The resolved permissions and meta of one user.
+     */
+    static final class Subject {
+        private final PermissionTrie trie;
+        private final Map<String, Boolean> permissions;
+        private final Map<String, String> meta;
+
+        private Subject(Map<String, Boolean> permissions, Map<String, String> meta) {
+            this.trie = new PermissionTrie(permissions);
+            this.permissions = Map.copyOf(permissions);
+            this.meta = Map.copyOf(meta);
+        }
+
+        PermissionTrie getTrie() {
+            return this.trie;
+        }
+
+        Map<String, Boolean> getPermissions() {
+            return this.permissions;
+        }
+
+        @Nullable
+        String getMeta(String key) {
+            return this.meta.get(key);
+        }
+
+        Map<String, String> getMeta() {
+            return this.meta;
+        }
+    }
+
+    private static final class State {
+        private static final State EMPTY = new State(Collections.emptyMap(), new Subject(Collections.emptyMap(), Collections.emptyMap()));
+
+        private final Map<UUID, Subject> users;
+        private final Subject defaults;
+
+        private State(Map<UUID, Subject> users, Subject defaults) {
+            this.users = users;
+            this.defaults = defaults;
+        }
+
+        private static State parse(JsonObject root) {
+            Map<String, Group> groups = new HashMap<>();
+            JsonObject groupsJson = object(root, "groups");
+            if (groupsJson != null) {
+                for (Map.Entry<String, JsonElement> group : groupsJson.entrySet()) {
+                    groups.put(group.getKey(), Group.parse(group.getKey(), group.getValue().getAsJsonObject()));
+                }
+            }
+            Subject defaults = resolve(new Group("", Collections.emptyList(), Collections.emptyMap(), Collections.emptyMap()), groups);
+            Map<UUID, Subject> users = new HashMap<>();
+            JsonObject usersJson = object(root, "users");
+            if (usersJson != null) {
+                for (Map.Entry<String, JsonElement> user : usersJson.entrySet()) {
+                    UUID uuid;
+                    try {
+                        uuid = UUID.fromString(user.getKey());
+                    } catch (IllegalArgumentException e) {
+                        throw new JsonParseException("Invalid user uuid " + user.getKey(), e);
+                    }
+                    JsonObject json = user.getValue().getAsJsonObject();
+                    users.put(uuid, resolve(new Group(user.getKey(), strings(json, "groups"), permissions(json), meta(json)), groups));
+                }
+            }
+            return new State(Map.copyOf(users), defaults);
+        }
+
+        /**
+         * Flattens a user and their groups, breadth first, so that nearer groups win over the groups they inherit.
+         */
+        private static Subject resolve(Group user, Map<String, Group> groups) {
+            Map<String, Boolean> permissions = new HashMap<>();
+            Map<String, String> meta = new HashMap<>();
+            Set<String> visited = new HashSet<>();
+            Deque<Group> queue = new ArrayDeque<>();
+            queue.add(user);
+            while (!queue.isEmpty()) {
+                Group group = queue.poll();
+                group.permissions.forEach(permissions::putIfAbsent);
+                group.meta.forEach(meta::putIfAbsent);
+                for (String parent : group.inherits) {
+                    // a visited group is either already merged or a cycle
+                    if (!visited.add(parent)) continue;
+                    Group inherited = groups.get(parent);
+                    if (inherited == null) {
+                        PermissionsMod.LOGGER.warn("Built-in permissions group {} inherits unknown group {}", group.name, parent);
+                        continue;
+                    }
+                    queue.add(inherited);
+                }
+                if (queue.isEmpty() && visited.add(DEFAULT_GROUP)) {
+                    Group defaults = groups.get(DEFAULT_GROUP);
+                    if (defaults != null) queue.add(defaults);
+                }
+            }
+            return new Subject(permissions, meta);
+        }
+    }
+
+    private static final class Group {
+        private final String name;
+        private final List<String> inherits;
+        private final Map<String, Boolean> permissions;
+        private final Map<String, String> meta;
+
+        private Group(String name, List<String> inherits, Map<String, Boolean> permissions, Map<String, String> meta) {
+            this.name = name;
+            this.inherits = inherits;
+            this.permissions = permissions;
+            this.meta = meta;
+        }
+
+        private static Group parse(String name, JsonObject json) {
+            return new Group(name, strings(json, "inherits"), permissions(json), meta(json));
+        }
+    }
+
+    @Nullable
+    private static JsonObject object(JsonObject json, String key) {
+        JsonElement element = json.get(key);
+        return element == null || element.isJsonNull() ? null : element.getAsJsonObject();
+    }
+
+    private static List<String> strings(JsonObject json, String key) {
+        JsonElement element = json.get(key);
+        if (element == null || element.isJsonNull()) return Collections.emptyList();
+        List<String> values = new ArrayList<>();
+        for (JsonElement value : element.getAsJsonArray()) {
+            values.add(value.getAsString());
+        }
+        return values;
+    }
+
+    private static Map<String, Boolean> permissions(JsonObject json) {
+        JsonObject permissions = object(json, "permissions");
+        if (permissions == null) return Collections.emptyMap();
+        Map<String, Boolean> values = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonElement> permission : permissions.entrySet()) {
+            values.put(permission.getKey(), permission.getValue().getAsBoolean());
+        }
+        return values;
+    }
+
+    private static Map<String, String> meta(JsonObject json) {
+        JsonObject meta = object(json, "meta");
+        if (meta == null) return Collections.emptyMap();
+        Map<String, String> values = new LinkedHashMap<>();
+        for (Map.Entry<String, JsonElement> entry : meta.entrySet()) {
+            values.put(entry.getKey(), entry.getValue().getAsString());
+        }
+        return values;
+    }
+}
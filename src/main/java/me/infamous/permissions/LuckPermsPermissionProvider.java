@@ -0,0 +1,373 @@
+package me.infamous.permissions;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.event.EventSubscription;
+import net.luckperms.api.event.context.ContextUpdateEvent;
+import net.luckperms.api.event.user.UserDataRecalculateEvent;
+import net.luckperms.api.event.user.UserLoadEvent;
+import net.luckperms.api.cacheddata.CachedMetaData;
+import net.luckperms.api.cacheddata.CachedPermissionData;
+import net.luckperms.api.model.user.User;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The built-in provider, backed by LuckPerms.
+ *
+ * <p>Only created when LuckPerms is installed. LuckPerms types must not leak out of this class
+ * and the {@link OfflineUserCache} and {@link PermissionSnapshots} paths it drives, so that the
+ * built-in permissions work without the LuckPerms API on the classpath.</p>
+ */
+class LuckPermsPermissionProvider implements PermissionProvider, OfflinePermissionProvider, OptionProvider {
+    private static final CompletableFuture<Tristate> UNDEFINED = CompletableFuture.completedFuture(Tristate.UNDEFINED);
+
+    private final List<EventSubscription<?>> subscriptions = new ArrayList<>();
+
+    /**
+     * Listens to the LuckPerms events that invalidate what was resolved for a user.
+     */
+    void subscribe(LuckPerms lp) {
+        this.subscriptions.add(lp.getEventBus().subscribe(UserDataRecalculateEvent.class, this::onUserDataRecalculate));
+        this.subscriptions.add(lp.getEventBus().subscribe(ContextUpdateEvent.class, this::onContextUpdate));
+        this.subscriptions.add(lp.getEventBus().subscribe(UserLoadEvent.class, this::onUserLoad));
+    }
+
+    void unsubscribe() {
+        this.subscriptions.forEach(EventSubscription::close);
+        this.subscriptions.clear();
+    }
+
+    private void onUserDataRecalculate(UserDataRecalculateEvent event) {
+        UUID uuid = event.getUser().getUniqueId();
+        PermissionsMod.OFFLINE_USERS.recalculated(uuid, event.getUser());
+        PermissionsMod.invalidateResolved(uuid);
+    }
+
+    private void onUserLoad(UserLoadEvent event) {
+        PermissionsMod.MISSING_USERS.remove(event.getUser().getUniqueId());
+    }
+
+    private void onContextUpdate(ContextUpdateEvent event) {
+        event.getSubject(ServerPlayer.class).ifPresent(player -> PermissionsMod.invalidateResolved(player.getUUID()));
+    }
+
+    @Override
+    public Tristate getPermissionValue(CommandSourceStack source, String permission) {
+        return this.getPermissionValue(source, NodeKeys.id(permission), permission);
+    }
+
+    @Override
+    public Tristate getPermissionValue(Entity entity, String permission) {
+        return this.getPermissionValue(entity, NodeKeys.id(permission), permission);
+    }
+
+    @Override
+    public Tristate getPermissionValue(CommandSourceStack source, int id, String permission) {
+        ServerPlayer player = source.getPlayer();
+        if(player == null) return Tristate.UNDEFINED;
+        return this.getPermissionValue(player, id, permission);
+    }
+
+    @Override
+    public Tristate getPermissionValue(Entity entity, int id, String permission) {
+        if(!(entity instanceof ServerPlayer)) return Tristate.UNDEFINED;
+        return this.getPermissionValue((ServerPlayer) entity, id, permission);
+    }
+
+    private Tristate getPermissionValue(ServerPlayer player, int id, String permission) {
+        PermissionCache.Entry cached = PermissionsMod.PERMISSION_CACHE.peek(player.getUUID());
+        Tristate state = cached == null ? null : cached.get(id, permission);
+        PermissionMetrics.permissionCache(state != null);
+        if(state != null) return state;
+        CachedPermissionData data = this.getPermissionData(player);
+        if(data == null) return Tristate.UNDEFINED;
+        // only players with a LuckPerms user get an entry, fake players are never invalidated
+        if(cached == null) cached = PermissionsMod.PERMISSION_CACHE.entry(player.getUUID());
+        RequirementIndex requirements = RequirementIndex.get();
+        if(requirements.contains(id) && cached.claimRequirements()) {
+            for (String node : requirements.nodes()) {
+                cached.put(NodeKeys.intern(node), check(data, node));
+            }
+            state = cached.get(id);
+            if(state != null) return state;
+        }
+        state = check(data, permission);
+        cached.put(id, permission, state);
+        return state;
+    }
+
+    @Override
+    public Tristate[] getPermissionValues(CommandSourceStack source, String[] permissions) {
+        Tristate[] states = new Tristate[permissions.length];
+        Arrays.fill(states, Tristate.UNDEFINED);
+        ServerPlayer player = source.getPlayer();
+        if(player == null) return states;
+        PermissionCache.Entry cached = PermissionsMod.PERMISSION_CACHE.peek(player.getUUID());
+        CachedPermissionData data = null;
+        boolean resolved = false;
+        for (int i = 0; i < permissions.length; i++) {
+            int id = NodeKeys.id(permissions[i]);
+            Tristate state = cached == null ? null : cached.get(id, permissions[i]);
+            PermissionMetrics.permissionCache(state != null);
+            if(state == null) {
+                if(!resolved) {
+                    data = this.getPermissionData(player);
+                    resolved = true;
+                }
+                if(data == null) continue;
+                if(cached == null) cached = PermissionsMod.PERMISSION_CACHE.entry(player.getUUID());
+                state = check(data, permissions[i]);
+                cached.put(id, permissions[i], state);
+            }
+            states[i] = state;
+        }
+        return states;
+    }
+
+    @Override
+    public Map<String, Boolean> getPermissionsByPrefix(CommandSourceStack source, String prefix) {
+        ServerPlayer player = source.getPlayer();
+        if(player == null) return Collections.emptyMap();
+        PermissionCache.Entry cached = PermissionsMod.PERMISSION_CACHE.peek(player.getUUID());
+        PermissionTrie trie = cached == null ? null : cached.getTrie();
+        if(trie == null) {
+            CachedPermissionData data = this.getPermissionData(player);
+            if(data == null) return Collections.emptyMap();
+            trie = new PermissionTrie(data.getPermissionMap());
+            PermissionsMod.PERMISSION_CACHE.entry(player.getUUID()).setTrie(trie);
+        }
+        Map<String, Boolean> values = new HashMap<>();
+        trie.collect(prefix, values);
+        return values;
+    }
+
+    /**
+     * Resolves the given nodes for a player that just logged in, so that their first checks
+     * are cache hits. The user is looked up on the calling thread and the nodes are resolved
+     * on the {@link PermissionExecutors async executor}.
+     */
+    CompletableFuture<Void> warm(ServerPlayer player, String[] permissions) {
+        if(permissions.length == 0) return CompletableFuture.completedFuture(null);
+        CachedPermissionData data = this.getPermissionData(player);
+        if(data == null) return CompletableFuture.completedFuture(null);
+        PermissionCache.Entry cached = PermissionsMod.PERMISSION_CACHE.entry(player.getUUID());
+        return PermissionExecutors.runAsync(() -> {
+            long start = PermissionMetrics.start();
+            for (String permission : permissions) {
+                int id = NodeKeys.intern(permission);
+                if(cached.get(id) == null) cached.put(id, check(data, permission));
+            }
+            PermissionMetrics.record(PermissionMetrics.Api.WARMUP, start);
+        });
+    }
+
+    @Nullable
+    private CachedPermissionData getPermissionData(ServerPlayer player) {
+        User user = this.getUser(player);
+        return user == null ? null : user.getCachedData().getPermissionData();
+    }
+
+    /**
+     * Gets the LuckPerms user of an online player, going straight to {@code null} for players
+     * already known to have no user rather than asking (and catching) again.
+     */
+    @Nullable
+    private User getUser(ServerPlayer player) {
+        UUID uuid = player.getUUID();
+        if(PermissionsMod.MISSING_USERS.contains(uuid)) return null;
+        try{
+            return PermissionsMod.getPerms()
+                    .map(lp -> lp.getPlayerAdapter(ServerPlayer.class).getUser(player))
+                    .orElse(null);
+        } catch (IllegalStateException e){
+            PermissionsMod.trackAndLogMissingCapability(uuid);
+            return null;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Tristate> getPermissionValue(UUID uuid, String permission) {
+        try{
+            return PermissionsMod.getPerms()
+                    .map(lp -> this.getOfflinePermissionValue(lp, uuid, permission))
+                    .orElse(UNDEFINED);
+        } catch (IllegalStateException e){
+            PermissionsMod.trackAndLogMissingCapability(uuid);
+            return UNDEFINED;
+        }
+    }
+
+    private CompletableFuture<Tristate> getOfflinePermissionValue(LuckPerms lp, UUID uuid, String permission) {
+        OfflineResultStore store = PermissionsMod.offlineResults();
+        if(store != null) {
+            OfflineResultStore.Result stored = store.get(uuid, permission);
+            if(stored != null) {
+                if(stored.isStale()) refresh(lp, store, uuid, new String[]{permission});
+                return CompletableFuture.completedFuture(stored.getState());
+            }
+        }
+        long readAt = System.currentTimeMillis();
+        return PermissionsMod.OFFLINE_USERS.load(lp, uuid).thenApply(user -> {
+            Tristate state = check(user.getCachedData().getPermissionData(), permission);
+            if(store != null) store.put(uuid, permission, state, readAt);
+            return state;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Tristate[]> getPermissionValues(UUID uuid, String[] permissions) {
+        try{
+            return PermissionsMod.getPerms()
+                    .map(lp -> this.getOfflinePermissionValues(lp, uuid, permissions))
+                    .orElseGet(() -> undefined(permissions.length));
+        } catch (IllegalStateException e){
+            PermissionsMod.trackAndLogMissingCapability(uuid);
+            return undefined(permissions.length);
+        }
+    }
+
+    private CompletableFuture<Tristate[]> getOfflinePermissionValues(LuckPerms lp, UUID uuid, String[] permissions) {
+        OfflineResultStore store = PermissionsMod.offlineResults();
+        if(store != null) {
+            Tristate[] states = new Tristate[permissions.length];
+            boolean stale = false;
+            for (int i = 0; i < permissions.length && states != null; i++) {
+                OfflineResultStore.Result stored = store.get(uuid, permissions[i]);
+                if(stored == null) {
+                    states = null;
+                } else {
+                    states[i] = stored.getState();
+                    stale |= stored.isStale();
+                }
+            }
+            if(states != null) {
+                if(stale) refresh(lp, store, uuid, permissions);
+                return CompletableFuture.completedFuture(states);
+            }
+        }
+        long readAt = System.currentTimeMillis();
+        return PermissionsMod.OFFLINE_USERS.load(lp, uuid).thenApply(user -> {
+            Tristate[] states = resolve(user.getCachedData().getPermissionData(), permissions);
+            if(store != null) {
+                for (int i = 0; i < permissions.length; i++) {
+                    store.put(uuid, permissions[i], states[i], readAt);
+                }
+            }
+            return states;
+        });
+    }
+
+    /**
+     * Reloads results served from the {@link OfflineResultStore} in the background, so the
+     * caller gets the stored result right away.
+     */
+    private static void refresh(LuckPerms lp, OfflineResultStore store, UUID uuid, String[] permissions) {
+        long readAt = System.currentTimeMillis();
+        PermissionsMod.OFFLINE_USERS.load(lp, uuid).thenAccept(user -> {
+            Tristate[] states = resolve(user.getCachedData().getPermissionData(), permissions);
+            for (int i = 0; i < permissions.length; i++) {
+                store.put(uuid, permissions[i], states[i], readAt);
+            }
+        }).exceptionally(e -> {
+            PermissionsMod.LOGGER.warn("Failed to refresh the stored offline results of {}", uuid, e);
+            return null;
+        });
+    }
+
+    /**
+     * Checks a node with LuckPerms, converting its state to ours.
+     */
+    private static Tristate check(CachedPermissionData data, String permission) {
+        return LuckPermsStates.fromLuckPerms(data.checkPermission(permission));
+    }
+
+    private static Tristate[] resolve(CachedPermissionData data, String[] permissions) {
+        Tristate[] states = new Tristate[permissions.length];
+        for (int i = 0; i < permissions.length; i++) {
+            states[i] = check(data, permissions[i]);
+        }
+        return states;
+    }
+
+    private static CompletableFuture<Tristate[]> undefined(int length) {
+        Tristate[] states = new Tristate[length];
+        Arrays.fill(states, Tristate.UNDEFINED);
+        return CompletableFuture.completedFuture(states);
+    }
+
+    @Nullable
+    @Override
+    public String getOption(CommandSourceStack source, String key) {
+        ServerPlayer player = source.getPlayer();
+        if(player == null) return null;
+        return this.getOption(player, key);
+    }
+
+    @Nullable
+    @Override
+    public String getOption(Entity entity, String key) {
+        if(!(entity instanceof ServerPlayer)) return null;
+        return this.getOption((ServerPlayer) entity, key);
+    }
+
+    @Nullable
+    private String getOption(ServerPlayer player, String key) {
+        User user = this.getUser(player);
+        if(user == null) return null;
+        // the entry is where OptionCache memoizes, only for players whose recalculations invalidate it
+        PermissionsMod.PERMISSION_CACHE.entry(player.getUUID());
+        return user.getCachedData().getMetaData().getMetaValue(key);
+    }
+
+    @Override
+    public Map<String, String> getOptions(CommandSourceStack source, Collection<String> keys) {
+        CachedMetaData meta = this.getMetaData(source);
+        if(meta == null) return Collections.emptyMap();
+        Map<String, String> values = new HashMap<>();
+        for (String key : keys) {
+            String value = meta.getMetaValue(key);
+            if(value != null) values.put(key, value);
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, String> getAllOptions(CommandSourceStack source) {
+        CachedMetaData meta = this.getMetaData(source);
+        if(meta == null) return Collections.emptyMap();
+        return getAllOptions(meta);
+    }
+
+    /**
+     * Gets every option of a user, picking each value with LuckPerms' configured value
+     * selector so that bulk reads agree with {@link #getOption(ServerPlayer, String)}.
+     */
+    static Map<String, String> getAllOptions(CachedMetaData meta) {
+        Map<String, String> values = new HashMap<>();
+        for (String key : meta.getMeta().keySet()) {
+            String value = meta.getMetaValue(key);
+            if(value != null) values.put(key, value);
+        }
+        return values;
+    }
+
+    @Nullable
+    private CachedMetaData getMetaData(CommandSourceStack source) {
+        ServerPlayer player = source.getPlayer();
+        if(player == null) return null;
+        User user = this.getUser(player);
+        return user == null ? null : user.getCachedData().getMetaData();
+    }
+}
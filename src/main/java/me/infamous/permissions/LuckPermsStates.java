@@ -0,0 +1,48 @@
+package me.infamous.permissions;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Converts between our {@link Tristate} and LuckPerms' {@code Tristate}, which the v0 API and
+ * the check events expose.
+ *
+ * <p>Only reached through those LuckPerms-typed entry points, so it is never loaded on servers
+ * without LuckPerms.</p>
+ */
+public final class LuckPermsStates {
+
+    private LuckPermsStates() {
+    }
+
+    public static net.luckperms.api.util.Tristate toLuckPerms(Tristate state) {
+        switch (state) {
+            case TRUE: return net.luckperms.api.util.Tristate.TRUE;
+            case FALSE: return net.luckperms.api.util.Tristate.FALSE;
+            default: return net.luckperms.api.util.Tristate.UNDEFINED;
+        }
+    }
+
+    public static Tristate fromLuckPerms(net.luckperms.api.util.Tristate state) {
+        switch (state) {
+            case TRUE: return Tristate.TRUE;
+            case FALSE: return Tristate.FALSE;
+            default: return Tristate.UNDEFINED;
+        }
+    }
+
+    public static net.luckperms.api.util.Tristate[] toLuckPerms(Tristate[] states) {
+        net.luckperms.api.util.Tristate[] converted = new net.luckperms.api.util.Tristate[states.length];
+        for (int i = 0; i < states.length; i++) {
+            converted[i] = toLuckPerms(states[i]);
+        }
+        return converted;
+    }
+
+    public static CompletableFuture<net.luckperms.api.util.Tristate> toLuckPerms(CompletableFuture<Tristate> state) {
+        return state.thenApply(LuckPermsStates::toLuckPerms);
+    }
+
+    public static CompletableFuture<Tristate> fromLuckPerms(CompletableFuture<net.luckperms.api.util.Tristate> state) {
+        return state.thenApply(LuckPermsStates::fromLuckPerms);
+    }
+}
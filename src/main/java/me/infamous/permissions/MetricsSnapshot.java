@@ -0,0 +1,234 @@
+package me.infamous.permissions;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable view of {@link PermissionMetrics} at a point in time.
+ */
+public final class MetricsSnapshot {
+    private final Map<PermissionMetrics.Api, Timer> apis;
+    private final List<Node> topNodes;
+    private final long permissionCacheHits;
+    private final long permissionCacheMisses;
+    private final long optionCacheHits;
+    private final long optionCacheMisses;
+    private final long offlineUserHits;
+    private final long offlineUserMisses;
+    private final long offlineUserEvictions;
+    private final int offlineUsersCached;
+    private final int playersCached;
+    private final long asyncQueueDepth;
+    private final double asyncAverageQueueLatencyMillis;
+    private final double asyncMaxQueueLatencyMillis;
+    private final long auditRecorded;
+    private final long auditWritten;
+    private final long auditDropped;
+    private final long auditFailed;
+
+    MetricsSnapshot(Map<PermissionMetrics.Api, Timer> apis, List<Node> topNodes,
+                    long permissionCacheHits, long permissionCacheMisses,
+                    long optionCacheHits, long optionCacheMisses,
+                    long offlineUserHits, long offlineUserMisses, long offlineUserEvictions, int offlineUsersCached,
+                    int playersCached,
+                    long asyncQueueDepth, double asyncAverageQueueLatencyMillis, double asyncMaxQueueLatencyMillis,
+                    long auditRecorded, long auditWritten, long auditDropped, long auditFailed) {
+        this.apis = apis;
+        this.topNodes = topNodes;
+        this.permissionCacheHits = permissionCacheHits;
+        this.permissionCacheMisses = permissionCacheMisses;
+        this.optionCacheHits = optionCacheHits;
+        this.optionCacheMisses = optionCacheMisses;
+        this.offlineUserHits = offlineUserHits;
+        this.offlineUserMisses = offlineUserMisses;
+        this.offlineUserEvictions = offlineUserEvictions;
+        this.offlineUsersCached = offlineUsersCached;
+        this.playersCached = playersCached;
+        this.asyncQueueDepth = asyncQueueDepth;
+        this.asyncAverageQueueLatencyMillis = asyncAverageQueueLatencyMillis;
+        this.asyncMaxQueueLatencyMillis = asyncMaxQueueLatencyMillis;
+        this.auditRecorded = auditRecorded;
+        this.auditWritten = auditWritten;
+        this.auditDropped = auditDropped;
+        this.auditFailed = auditFailed;
+    }
+
+    public Map<PermissionMetrics.Api, Timer> getApis() {
+        return this.apis;
+    }
+
+    public Timer getApi(PermissionMetrics.Api api) {
+        return this.apis.get(api);
+    }
+
+    /**
+     * Gets the most checked nodes, most checked first.
+     *
+     * @return the nodes
+     */
+    public List<Node> getTopNodes() {
+        return this.topNodes;
+    }
+
+    public long getPermissionCacheHits() {
+        return this.permissionCacheHits;
+    }
+
+    public long getPermissionCacheMisses() {
+        return this.permissionCacheMisses;
+    }
+
+    public double getPermissionCacheHitRatio() {
+        return ratio(this.permissionCacheHits, this.permissionCacheMisses);
+    }
+
+    public long getOptionCacheHits() {
+        return this.optionCacheHits;
+    }
+
+    public long getOptionCacheMisses() {
+        return this.optionCacheMisses;
+    }
+
+    public double getOptionCacheHitRatio() {
+        return ratio(this.optionCacheHits, this.optionCacheMisses);
+    }
+
+    public long getOfflineUserHits() {
+        return this.offlineUserHits;
+    }
+
+    public long getOfflineUserMisses() {
+        return this.offlineUserMisses;
+    }
+
+    public double getOfflineUserHitRatio() {
+        return ratio(this.offlineUserHits, this.offlineUserMisses);
+    }
+
+    public long getOfflineUserEvictions() {
+        return this.offlineUserEvictions;
+    }
+
+    public int getOfflineUsersCached() {
+        return this.offlineUsersCached;
+    }
+
+    public int getPlayersCached() {
+        return this.playersCached;
+    }
+
+    public long getAsyncQueueDepth() {
+        return this.asyncQueueDepth;
+    }
+
+    public double getAsyncAverageQueueLatencyMillis() {
+        return this.asyncAverageQueueLatencyMillis;
+    }
+
+    public double getAsyncMaxQueueLatencyMillis() {
+        return this.asyncMaxQueueLatencyMillis;
+    }
+
+    public long getAuditRecorded() {
+        return this.auditRecorded;
+    }
+
+    public long getAuditWritten() {
+        return this.auditWritten;
+    }
+
+    /**
+     * Gets the number of audit records dropped because the {@link AuditLog} buffer was full.
+     *
+     * @return the number of dropped records
+     */
+    public long getAuditDropped() {
+        return this.auditDropped;
+    }
+
+    public long getAuditFailed() {
+        return this.auditFailed;
+    }
+
+    private static double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : hits / (double) total;
+    }
+
+    /**
+     * The call count and latency distribution of an API or node.
+     */
+    public static final class Timer {
+        static final int BUCKETS = 40;
+
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+        private final long[] buckets;
+
+        Timer(long count, long totalNanos, long maxNanos, long[] buckets) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.buckets = buckets;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public double getAverageNanos() {
+            return this.count == 0 ? 0 : this.totalNanos / (double) this.count;
+        }
+
+        public long getMaxNanos() {
+            return this.maxNanos;
+        }
+
+        /**
+         * Gets an upper bound of the given percentile of latencies. Latencies are bucketed by
+         * powers of two, so the result is accurate to within a factor of two.
+         *
+         * @param percentile the percentile, between 0 and 1
+         * @return the upper bound in nanoseconds, or 0 if nothing was recorded
+         */
+        public long getPercentileNanos(double percentile) {
+            long total = 0;
+            for (long bucket : this.buckets) {
+                total += bucket;
+            }
+            if (total == 0) return 0;
+            long target = (long) Math.ceil(total * percentile);
+            long seen = 0;
+            for (int i = 0; i < this.buckets.length; i++) {
+                seen += this.buckets[i];
+                if (seen >= target && this.buckets[i] > 0) {
+                    return Math.min(i == 0 ? 0 : 1L << i, this.maxNanos);
+                }
+            }
+            return this.maxNanos;
+        }
+    }
+
+    /**
+     * The call count and latency distribution of a single permission node.
+     */
+    public static final class Node {
+        private final String permission;
+        private final Timer timer;
+
+        Node(String permission, Timer timer) {
+            this.permission = permission;
+            this.timer = timer;
+        }
+
+        public String getPermission() {
+            return this.permission;
+        }
+
+        public Timer getTimer() {
+            return this.timer;
+        }
+    }
+}
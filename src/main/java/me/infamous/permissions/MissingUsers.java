@@ -0,0 +1,106 @@
+package me.infamous.permissions;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers players that LuckPerms has no user for (fake players, NPCs, players that are
+ * still logging in), so their checks go straight to the fallback instead of asking LuckPerms
+ * and catching the resulting exception every time.
+ *
+ * <p>Entries expire after a while in case the user shows up without an event we listen to,
+ * and the set is bounded so that an NPC mod minting random uuids cannot grow it forever.</p>
+ *
+ * <p>Players are also remembered once they have been {@link #report(UUID) reported}, so each
+ * is only logged loudly once per server session. That set is bounded in the same way.</p>
+ */
+final class MissingUsers {
+    private final ConcurrentHashMap<UUID, Long> marked = new ConcurrentHashMap<>();
+    private final Set<UUID> reported = ConcurrentHashMap.newKeySet();
+    private volatile int maximumSize;
+    private volatile long expireAfterNanos;
+
+    MissingUsers(int maximumSize, long expireAfter, TimeUnit unit) {
+        this.configure(maximumSize, expireAfter, unit);
+    }
+
+    void configure(int maximumSize, long expireAfter, TimeUnit unit) {
+        this.maximumSize = maximumSize;
+        this.expireAfterNanos = unit.toNanos(expireAfter);
+    }
+
+    boolean contains(UUID uuid) {
+        Long marked = this.marked.get(uuid);
+        if (marked == null) return false;
+        if (System.nanoTime() - marked < this.expireAfterNanos) return true;
+        this.marked.remove(uuid, marked);
+        return false;
+    }
+
+    /**
+     * Marks the given player as missing.
+     *
+     * @param uuid the player uuid
+     * @return {@code true} if the player was not marked already
+     */
+    boolean mark(UUID uuid) {
+        long now = System.nanoTime();
+        Long previous = this.marked.put(uuid, now);
+        if (this.marked.size() > this.maximumSize) {
+            this.evict(now);
+        }
+        return previous == null || now - previous >= this.expireAfterNanos;
+    }
+
+    /**
+     * Remembers that the given player has been reported as missing.
+     *
+     * @param uuid the player uuid
+     * @return {@code true} if the player was not reported yet this session, and there was room
+     * to remember it
+     */
+    boolean report(UUID uuid) {
+        if (this.reported.contains(uuid) || this.reported.size() >= this.maximumSize) return false;
+        return this.reported.add(uuid);
+    }
+
+    /**
+     * Forgets the reported players, at the end of a server session.
+     */
+    void clearReported() {
+        this.reported.clear();
+    }
+
+    void remove(UUID uuid) {
+        this.marked.remove(uuid);
+    }
+
+    void clear() {
+        this.marked.clear();
+    }
+
+    int size() {
+        return this.marked.size();
+    }
+
+    /**
+     * Drops expired entries, then arbitrary ones until the set is back to 90% of its bound.
+     * A dropped player is simply asked about again on its next check.
+     */
+    private synchronized void evict(long now) {
+        int target = this.maximumSize * 9 / 10;
+        Iterator<Map.Entry<UUID, Long>> iterator = this.marked.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (now - iterator.next().getValue() >= this.expireAfterNanos) iterator.remove();
+        }
+        iterator = this.marked.entrySet().iterator();
+        while (this.marked.size() > target && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
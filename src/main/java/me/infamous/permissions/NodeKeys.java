@@ -0,0 +1,137 @@
+package me.infamous.permissions;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns permission node strings and assigns each one a dense int id, so per-node
+ * state can be kept in arrays instead of maps keyed by string.
+ *
+ * <p>Ids are never released, so nodes only checked by string get one until
+ * {@link PermissionsConfig#NODE_IDS the limit} is reached, after which they get {@link #NO_ID}.
+ * Those nodes, such as ones built from player input, are cached in a small map per player
+ * instead, are not timed per node and are not {@link DeclaredNodes reported} when undeclared.
+ * Node handles and command nodes are {@link #intern(String) interned} regardless of the limit,
+ * as there is a fixed number of them.</p>
+ */
+public final class NodeKeys {
+    /**
+     * Returned by {@link #id(String)} for nodes that did not get an id.
+     */
+    public static final int NO_ID = -1;
+
+    private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] keys = new String[64];
+    private static volatile int size;
+    private static volatile int limit = 4096;
+    private static volatile boolean limitReported;
+
+    private NodeKeys() {
+    }
+
+    /**
+     * Gets the id of the given node, assigning one if the node has not been seen before and
+     * the limit has not been reached.
+     *
+     * @param node the node
+     * @return the id of the node, or {@link #NO_ID}
+     */
+    public static int id(String node) {
+        Integer id = IDS.get(node);
+        if (id != null) return id;
+        if (size >= limit) {
+            if (!limitReported) {
+                limitReported = true;
+                PermissionsMod.LOGGER.warn("More than {} distinct permission nodes were checked, further nodes are cached per player "
+                        + "and not counted per node. Nodes built from player input should be checked with a fixed node instead", limit);
+            }
+            return NO_ID;
+        }
+        return register(node);
+    }
+
+    /**
+     * Gets the id of the given node, assigning one regardless of the limit. Only for nodes
+     * there is a fixed number of, such as node handles.
+     *
+     * @param node the node
+     * @return the id of the node
+     */
+    public static int intern(String node) {
+        Integer id = IDS.get(node);
+        if (id != null) return id;
+        return register(node);
+    }
+
+    /**
+     * Gets the interned node string for the given id.
+     *
+     * @param id the id
+     * @return the node
+     */
+    public static String key(int id) {
+        Objects.checkIndex(id, size);
+        return keys[id];
+    }
+
+    public static int size() {
+        return size;
+    }
+
+    /**
+     * Sets the number of nodes {@link #id(String)} assigns ids to. Nodes that already have an id keep it.
+     */
+    static void setLimit(int limit) {
+        NodeKeys.limit = limit;
+    }
+
+    /**
+     * Gets every node seen so far, in id order.
+     *
+     * @return the nodes
+     */
+    static List<String> keys() {
+        int size = NodeKeys.size;
+        return Arrays.asList(keys).subList(0, size);
+    }
+
+    /**
+     * Checks that the given string is usable as a permission node.
+     *
+     * @param node the node
+     * @return the node
+     * @throws IllegalArgumentException if the node is empty, contains whitespace or has an empty segment
+     */
+    public static String validate(String node) {
+        Objects.requireNonNull(node, "node");
+        if (node.isEmpty()) {
+            throw new IllegalArgumentException("Permission node is empty");
+        }
+        if (node.charAt(0) == '.' || node.charAt(node.length() - 1) == '.' || node.contains("..")) {
+            throw new IllegalArgumentException("Permission node has an empty segment: " + node);
+        }
+        for (int i = 0; i < node.length(); i++) {
+            if (Character.isWhitespace(node.charAt(i))) {
+                throw new IllegalArgumentException("Permission node contains whitespace: " + node);
+            }
+        }
+        return node;
+    }
+
+    private static synchronized int register(String node) {
+        Integer existing = IDS.get(node);
+        if (existing != null) return existing;
+        int id = size;
+        String[] current = keys;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, id * 2);
+        }
+        current[id] = node;
+        keys = current;
+        size = id + 1;
+        IDS.put(node, id);
+        return id;
+    }
+}
@@ -0,0 +1,97 @@
+package me.infamous.permissions;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves a set of permissions for many offline players with a bounded number of
+ * players in flight, completing once with every result.
+ *
+ * <p>A player that fails to load does not fail the batch: their permissions are all
+ * {@link Tristate#UNDEFINED}, and the failures are logged once the batch completes.</p>
+ */
+final class OfflineBatch {
+    private final Iterator<UUID> pending;
+    private final String[] permissions;
+    private final Map<UUID, Tristate[]> results;
+    private final AtomicInteger remaining;
+    private final AtomicInteger failed = new AtomicInteger();
+    @Nullable
+    private volatile Throwable firstError;
+    private final CompletableFuture<Map<UUID, Tristate[]>> future = new CompletableFuture<>();
+
+    OfflineBatch(Set<UUID> uuids, String[] permissions) {
+        this.pending = uuids.iterator();
+        this.permissions = permissions;
+        this.results = new ConcurrentHashMap<>(uuids.size());
+        this.remaining = new AtomicInteger(uuids.size());
+    }
+
+    CompletableFuture<Map<UUID, Tristate[]>> run(int parallelism) {
+        if (this.remaining.get() == 0) {
+            this.future.complete(Collections.emptyMap());
+            return this.future;
+        }
+        for (int i = 0; i < parallelism; i++) {
+            this.lane();
+        }
+        return this.future;
+    }
+
+    /**
+     * Resolves players one after another until none are left. Results that are already
+     * complete are consumed in a loop rather than through callbacks, so a batch served
+     * entirely from cache does not recurse.
+     */
+    private void lane() {
+        UUID uuid;
+        while ((uuid = this.next()) != null) {
+            CompletableFuture<Tristate[]> states = PermissionProviders.getPermissionValues(uuid, this.permissions);
+            if (!states.isDone()) {
+                UUID current = uuid;
+                states.whenComplete((resolved, error) -> {
+                    this.complete(current, resolved, error);
+                    this.lane();
+                });
+                return;
+            }
+            Tristate[] resolved = null;
+            Throwable error = null;
+            try {
+                resolved = states.join();
+            } catch (RuntimeException e) {
+                error = e;
+            }
+            this.complete(uuid, resolved, error);
+        }
+    }
+
+    private synchronized UUID next() {
+        return this.pending.hasNext() ? this.pending.next() : null;
+    }
+
+    private void complete(UUID uuid, Tristate[] resolved, Throwable error) {
+        if (error != null) {
+            if (this.failed.getAndIncrement() == 0) this.firstError = error;
+            resolved = new Tristate[this.permissions.length];
+            Arrays.fill(resolved, Tristate.UNDEFINED);
+        }
+        this.results.put(uuid, resolved);
+        if (this.remaining.decrementAndGet() == 0) {
+            int failed = this.failed.get();
+            if (failed > 0) {
+                PermissionsMod.LOGGER.warn("Failed to load {} of {} players of an offline batch check, their permissions are undefined",
+                        failed, this.results.size(), this.firstError);
+            }
+            this.future.complete(Collections.unmodifiableMap(this.results));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package me.infamous.permissions;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Answers offline permission checks made through {@link me.lucko.fabric.api.permissions.v0.Permissions}.
+ *
+ * <p>Providers are registered with {@link PermissionProviders#registerOfflineProvider(OfflinePermissionProvider)}
+ * and are called directly, without posting an event.</p>
+ */
+@FunctionalInterface
+public interface OfflinePermissionProvider {
+
+    /**
+     * Gets the {@link Tristate state} of a {@code permission} for the given (potentially) offline player.
+     *
+     * @param uuid the player uuid
+     * @param permission the permission
+     * @return the state of the permission, completing with {@link Tristate#UNDEFINED} to defer to the next provider
+     */
+    CompletableFuture<Tristate> getPermissionValue(UUID uuid, String permission);
+
+    /**
+     * Gets the {@link Tristate states} of several permissions for the given (potentially) offline player.
+     *
+     * <p>Providers backed by storage should override this to load the player once for all permissions.</p>
+     *
+     * @param uuid the player uuid
+     * @param permissions the permissions
+     * @return the states of the permissions, in the same order as {@code permissions}
+     */
+    default CompletableFuture<Tristate[]> getPermissionValues(UUID uuid, String[] permissions) {
+        @SuppressWarnings("unchecked")
+        CompletableFuture<Tristate>[] states = new CompletableFuture[permissions.length];
+        for (int i = 0; i < permissions.length; i++) {
+            states[i] = this.getPermissionValue(uuid, permissions[i]);
+        }
+        return PermissionProviders.allOf(states);
+    }
+}
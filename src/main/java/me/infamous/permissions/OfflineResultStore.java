@@ -0,0 +1,292 @@
+package me.infamous.permissions;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Keeps the results of offline checks on disk, so that the first offline checks after a restart
+ * are answered without loading the player from LuckPerms storage.
+ *
+ * <p>The file is a fixed-size, memory-mapped hash table of 32 byte slots, each holding a player,
+ * a 64 bit hash of the node, and the time in milliseconds the result was read packed into one
+ * long with the result itself, so invalidations are compared at full precision. It is only
+ * mapped on first use. A slot is found by probing at most {@value #PROBES} slots from the
+ * player and node's hash; when they are all taken, the oldest one is replaced, so the table never
+ * needs to grow or be compacted.</p>
+ *
+ * <p>Results older than the TTL are ignored, as are results stored before LuckPerms last
+ * recalculated the player in this session. Reads are optimistic and never block; writes are
+ * serialized.</p>
+ */
+final class OfflineResultStore {
+    private static final int MAGIC = 0x50414F43;
+    private static final int VERSION = 2;
+    private static final int HEADER = 64;
+    private static final int SLOT = 32;
+    private static final int PROBES = 16;
+    private static final int STORED = 24;
+    // the top byte of the little-endian long at STORED
+    private static final int STATE = 31;
+    private static final long TIME_MASK = (1L << 56) - 1;
+    private static final int MAX_INVALIDATIONS = 10000;
+    private static final byte EMPTY = 0;
+
+    private final Path path;
+    private final int capacity;
+    private final long ttlMillis;
+    private final long refreshAfterMillis;
+    private final StampedLock lock = new StampedLock();
+    private final ConcurrentHashMap<UUID, Long> invalidated = new ConcurrentHashMap<>();
+    @Nullable
+    private volatile MappedByteBuffer buffer;
+    private volatile boolean failed;
+
+    OfflineResultStore(Path path, int entries, long ttl, long refreshAfter, TimeUnit unit) {
+        this.path = path;
+        this.capacity = Integer.highestOneBit(Math.max(PROBES, entries) - 1) << 1;
+        this.ttlMillis = unit.toMillis(ttl);
+        this.refreshAfterMillis = unit.toMillis(refreshAfter);
+    }
+
+    /**
+     * Gets a stored result.
+     *
+     * @param uuid the player uuid
+     * @param permission the permission
+     * @return the stored result, or {@code null} if there is none that is still valid
+     */
+    @Nullable
+    Result get(UUID uuid, String permission) {
+        MappedByteBuffer buffer = this.buffer();
+        if (buffer == null) return null;
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        long node = hash(permission);
+        long stamp = this.lock.tryOptimisticRead();
+        int slot = this.find(buffer, msb, lsb, node);
+        long stored = slot < 0 ? 0 : storedAt(buffer, slot);
+        byte state = slot < 0 ? EMPTY : buffer.get(offset(slot) + STATE);
+        if (!this.lock.validate(stamp)) {
+            stamp = this.lock.readLock();
+            try {
+                slot = this.find(buffer, msb, lsb, node);
+                stored = slot < 0 ? 0 : storedAt(buffer, slot);
+                state = slot < 0 ? EMPTY : buffer.get(offset(slot) + STATE);
+            } finally {
+                this.lock.unlockRead(stamp);
+            }
+        }
+        if (slot < 0 || state == EMPTY) return null;
+        long now = System.currentTimeMillis();
+        if (now - stored >= this.ttlMillis) return null;
+        Long invalidated = this.invalidated.get(uuid);
+        // a result stored in the same millisecond may predate the invalidation
+        if (invalidated != null && stored <= invalidated) return null;
+        return new Result(decode(state), now - stored >= this.refreshAfterMillis);
+    }
+
+    /**
+     * Stores a result, unless LuckPerms recalculated the player since it was read.
+     *
+     * @param uuid the player uuid
+     * @param permission the permission
+     * @param state the result
+     * @param readAt the time in milliseconds the player's data was requested, before the result was resolved
+     */
+    void put(UUID uuid, String permission, Tristate state, long readAt) {
+        Long invalidated = this.invalidated.get(uuid);
+        // the result may have been resolved from data the invalidation replaced
+        if (invalidated != null && readAt <= invalidated) return;
+        MappedByteBuffer buffer = this.buffer();
+        if (buffer == null) return;
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        long node = hash(permission);
+        long stamp = this.lock.writeLock();
+        try {
+            int slot = this.find(buffer, msb, lsb, node);
+            if (slot < 0) slot = this.victim(buffer, msb, lsb, node);
+            int offset = offset(slot);
+            buffer.putLong(offset, msb);
+            buffer.putLong(offset + 8, lsb);
+            buffer.putLong(offset + 16, node);
+            buffer.putLong(offset + STORED, readAt | (long) encode(state) << 56);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Ignores everything stored for a player so far, for when LuckPerms recalculates them.
+     */
+    void invalidate(UUID uuid) {
+        long now = System.currentTimeMillis();
+        if (this.invalidated.size() >= MAX_INVALIDATIONS) {
+            // results stored before this were already past the TTL
+            this.invalidated.values().removeIf(at -> now - at >= this.ttlMillis);
+        }
+        this.invalidated.put(uuid, now);
+    }
+
+    /**
+     * Takes over the invalidations of the store this one replaces, so results the previous one
+     * ignored are not served again after a config reload.
+     */
+    void inherit(OfflineResultStore previous) {
+        previous.invalidated.forEach((uuid, at) -> this.invalidated.merge(uuid, at, Math::max));
+    }
+
+    /**
+     * Writes the mapped table back to disk.
+     */
+    void flush() {
+        MappedByteBuffer buffer = this.buffer;
+        if (buffer != null) buffer.force();
+    }
+
+    private int find(MappedByteBuffer buffer, long msb, long lsb, long node) {
+        int mask = this.capacity - 1;
+        int start = index(msb, lsb, node) & mask;
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & mask;
+            int offset = offset(slot);
+            if (buffer.get(offset + STATE) == EMPTY) return -1;
+            if (buffer.getLong(offset + 16) == node && buffer.getLong(offset) == msb && buffer.getLong(offset + 8) == lsb) return slot;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the slot a new result goes into: the first empty one, or else the oldest one.
+     */
+    private int victim(MappedByteBuffer buffer, long msb, long lsb, long node) {
+        int mask = this.capacity - 1;
+        int start = index(msb, lsb, node) & mask;
+        int oldest = start;
+        long oldestAt = Long.MAX_VALUE;
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (start + i) & mask;
+            if (buffer.get(offset(slot) + STATE) == EMPTY) return slot;
+            long storedAt = storedAt(buffer, slot);
+            if (storedAt < oldestAt) {
+                oldest = slot;
+                oldestAt = storedAt;
+            }
+        }
+        return oldest;
+    }
+
+    @Nullable
+    private MappedByteBuffer buffer() {
+        MappedByteBuffer buffer = this.buffer;
+        if (buffer != null || this.failed) return buffer;
+        synchronized (this) {
+            if (this.buffer == null && !this.failed) {
+                try {
+                    this.buffer = this.map();
+                } catch (IOException | RuntimeException e) {
+                    PermissionsMod.LOGGER.error("Failed to open the offline result cache at {}, it will not be used", this.path, e);
+                    this.failed = true;
+                }
+            }
+            return this.buffer;
+        }
+    }
+
+    private MappedByteBuffer map() throws IOException {
+        Files.createDirectories(this.path.getParent());
+        long size = HEADER + (long) this.capacity * SLOT;
+        try (FileChannel channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            boolean compatible = channel.size() == size;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (compatible) {
+                compatible = buffer.getInt(0) == MAGIC && buffer.getInt(4) == VERSION && buffer.getInt(8) == this.capacity && buffer.getInt(12) == SLOT;
+            }
+            if (!compatible) {
+                // a different format or size, start over rather than migrate a cache
+                for (long offset = 0; offset < size; offset += 8) {
+                    buffer.putLong((int) offset, 0);
+                }
+                buffer.putInt(0, MAGIC);
+                buffer.putInt(4, VERSION);
+                buffer.putInt(8, this.capacity);
+                buffer.putInt(12, SLOT);
+            }
+            // the mapping stays valid after the channel is closed
+            return buffer;
+        }
+    }
+
+    private static long storedAt(MappedByteBuffer buffer, int slot) {
+        return buffer.getLong(offset(slot) + STORED) & TIME_MASK;
+    }
+
+    private static int offset(int slot) {
+        return HEADER + slot * SLOT;
+    }
+
+    private static int index(long msb, long lsb, long node) {
+        long hash = msb * 0x9E3779B97F4A7C15L ^ lsb ^ node * 0xC2B2AE3D27D4EB4FL;
+        return (int) (hash ^ (hash >>> 29) ^ (hash >>> 47));
+    }
+
+    /**
+     * The 64 bit FNV-1a hash of a node, stable across restarts unlike {@link NodeKeys node ids}.
+     */
+    private static long hash(String permission) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < permission.length(); i++) {
+            hash ^= permission.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    private static byte encode(Tristate state) {
+        switch (state) {
+            case TRUE: return 1;
+            case FALSE: return 2;
+            default: return 3;
+        }
+    }
+
+    private static Tristate decode(byte state) {
+        switch (state) {
+            case 1: return Tristate.TRUE;
+            case 2: return Tristate.FALSE;
+            default: return Tristate.UNDEFINED;
+        }
+    }
+
+    static final class Result {
+        private final Tristate state;
+        private final boolean stale;
+
+        private Result(Tristate state, boolean stale) {
+            this.state = state;
+            this.stale = stale;
+        }
+
+        Tristate getState() {
+            return this.state;
+        }
+
+        /**
+         * Whether the result is old enough to be refreshed in the background.
+         */
+        boolean isStale() {
+            return this.stale;
+        }
+    }
+}
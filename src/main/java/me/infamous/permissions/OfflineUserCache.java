@@ -0,0 +1,175 @@
+package me.infamous.permissions;
+
+import net.luckperms.api.LuckPerms;
+import net.luckperms.api.model.user.User;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caches LuckPerms users loaded for offline checks.
+ *
+ * <p>Concurrent loads of the same player share a single future, so storage is only hit
+ * once per player until the entry expires, is evicted to stay under the size bound, or is
+ * {@link #recalculated(UUID, User) replaced} by another user LuckPerms loaded.</p>
+ *
+ * <p>Entries outlive LuckPerms unloading the user, which its housekeeper does about a minute
+ * after an offline load, so a cached user may miss changes synced from other servers in the
+ * meantime for up to the expiry. Changes made on this server load a new user, which drops the
+ * entry.</p>
+ */
+final class OfflineUserCache {
+    private final ConcurrentHashMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private volatile int maximumSize;
+    private volatile long expireAfterNanos;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    OfflineUserCache(int maximumSize, long expireAfter, TimeUnit unit) {
+        this.configure(maximumSize, expireAfter, unit);
+    }
+
+    void configure(int maximumSize, long expireAfter, TimeUnit unit) {
+        this.maximumSize = maximumSize;
+        this.expireAfterNanos = unit.toNanos(expireAfter);
+    }
+
+    CompletableFuture<User> load(LuckPerms lp, UUID uuid) {
+        long now = System.nanoTime();
+        Entry entry = this.entries.get(uuid);
+        if (entry != null) {
+            if (now - entry.created < this.expireAfterNanos) {
+                this.hits.increment();
+                entry.lastAccess = now;
+                return entry.user;
+            }
+            if (this.entries.remove(uuid, entry)) this.evictions.increment();
+        }
+        User loaded = lp.getUserManager().getUser(uuid);
+        if (loaded != null) {
+            this.hits.increment();
+            return CompletableFuture.completedFuture(loaded);
+        }
+        Entry created = new Entry(new CompletableFuture<>(), now);
+        Entry existing = this.entries.putIfAbsent(uuid, created);
+        if (existing != null) {
+            this.hits.increment();
+            existing.lastAccess = now;
+            return existing.user;
+        }
+        this.misses.increment();
+        lp.getUserManager().loadUser(uuid).whenComplete((user, error) -> {
+            if (error != null) {
+                this.entries.remove(uuid, created);
+                created.user.completeExceptionally(error);
+            } else {
+                created.user.complete(user);
+            }
+        });
+        if (this.entries.size() > this.maximumSize) {
+            this.evict(now);
+        }
+        return created.user;
+    }
+
+    void invalidate(UUID uuid) {
+        this.entries.remove(uuid);
+    }
+
+    /**
+     * Drops the cached user of a player once LuckPerms recalculated some user of theirs, unless
+     * that is the cached user itself. LuckPerms updates the users it has loaded in place, and
+     * fires recalculations while filling in a user for a load this cache started, so only an
+     * entry holding a user LuckPerms has since replaced is stale.
+     *
+     * @param uuid the player uuid
+     * @param recalculated the recalculated user
+     */
+    void recalculated(UUID uuid, User recalculated) {
+        Entry entry = this.entries.get(uuid);
+        // a load still in flight completes with the user being filled in
+        if (entry == null || !entry.user.isDone() || entry.user.isCompletedExceptionally()) return;
+        if (entry.user.join() != recalculated) this.entries.remove(uuid, entry);
+    }
+
+    void invalidateAll() {
+        this.entries.clear();
+    }
+
+    long getHits() {
+        return this.hits.sum();
+    }
+
+    long getMisses() {
+        return this.misses.sum();
+    }
+
+    long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    void resetStats() {
+        this.hits.reset();
+        this.misses.reset();
+        this.evictions.reset();
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Drops expired entries, then the least recently used ones until the cache is back
+     * to 90% of its bound, so a full cache is not scanned on every insert.
+     */
+    private synchronized void evict(long now) {
+        if (this.entries.size() <= this.maximumSize) return;
+        List<Candidate> live = new ArrayList<>(this.entries.size());
+        for (Map.Entry<UUID, Entry> entry : this.entries.entrySet()) {
+            if (now - entry.getValue().created >= this.expireAfterNanos) {
+                if (this.entries.remove(entry.getKey(), entry.getValue())) this.evictions.increment();
+            } else {
+                live.add(new Candidate(entry.getKey(), entry.getValue()));
+            }
+        }
+        int target = this.maximumSize * 9 / 10;
+        if (this.entries.size() <= target) return;
+        live.sort(Comparator.comparingLong(candidate -> candidate.lastAccess));
+        for (int i = 0; i < live.size() && this.entries.size() > target; i++) {
+            Candidate candidate = live.get(i);
+            if (this.entries.remove(candidate.uuid, candidate.entry)) this.evictions.increment();
+        }
+    }
+
+    private static final class Candidate {
+        private final UUID uuid;
+        private final Entry entry;
+        private final long lastAccess;
+
+        private Candidate(UUID uuid, Entry entry) {
+            this.uuid = uuid;
+            this.entry = entry;
+            this.lastAccess = entry.lastAccess;
+        }
+    }
+
+    private static final class Entry {
+        private final CompletableFuture<User> user;
+        private final long created;
+        private volatile long lastAccess;
+
+        private Entry(CompletableFuture<User> user, long created) {
+            this.user = user;
+            this.created = created;
+            this.lastAccess = created;
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package me.infamous.permissions;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Indexes online players by the nodes they have and the values of their options, so that
+ * finding the players with a node or option value is proportional to the number found rather
+ * than the number online.
+ *
+ * <p>A node or option key is only indexed once it has been queried, by resolving it for every
+ * online player. From then on it is kept up to date: players are evaluated as they log in,
+ * dropped as they log out, and evaluated again at the end of the tick after LuckPerms
+ * recalculates them. Indexed nodes and keys are never dropped, so they should be a fixed set,
+ * not built from player input.</p>
+ *
+ * <p>Must only be used on the server thread.</p>
+ */
+final class OnlineIndex {
+    private final ConcurrentHashMap<String, Set<UUID>> permissions = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, OptionIndex> options = new ConcurrentHashMap<>();
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+
+    List<ServerPlayer> onlineWith(MinecraftServer server, String permission) {
+        this.refresh(server);
+        Set<UUID> players = this.permissions.get(permission);
+        if (players == null) {
+            players = ConcurrentHashMap.newKeySet();
+            for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+                if (has(player, permission)) players.add(player.getUUID());
+            }
+            this.permissions.put(permission, players);
+        }
+        return resolve(server, players, new ArrayList<>(players.size()));
+    }
+
+    List<ServerPlayer> onlineWhere(MinecraftServer server, String key, Predicate<String> predicate) {
+        this.refresh(server);
+        OptionIndex index = this.options.get(key);
+        if (index == null) {
+            index = new OptionIndex();
+            for (ServerPlayer player : server.getPlayerList().getPlayers()) {
+                index.update(player.getUUID(), PermissionProviders.getOption(player, key).orElse(null));
+            }
+            this.options.put(key, index);
+        }
+        List<ServerPlayer> found = new ArrayList<>();
+        for (Map.Entry<String, Set<UUID>> value : index.players.entrySet()) {
+            if (predicate.test(value.getKey())) resolve(server, value.getValue(), found);
+        }
+        return found;
+    }
+
+    void login(ServerPlayer player) {
+        this.pending.remove(player.getUUID());
+        this.evaluate(player);
+    }
+
+    void logout(UUID uuid) {
+        this.pending.remove(uuid);
+        for (Set<UUID> players : this.permissions.values()) {
+            players.remove(uuid);
+        }
+        for (OptionIndex index : this.options.values()) {
+            index.update(uuid, null);
+        }
+    }
+
+    /**
+     * Marks a player to be evaluated again at the end of the tick. Safe to call from any thread.
+     */
+    void markDirty(UUID uuid) {
+        if (!this.permissions.isEmpty() || !this.options.isEmpty()) this.pending.add(uuid);
+    }
+
+    /**
+     * Evaluates every marked player that is still online.
+     */
+    void refresh(MinecraftServer server) {
+        if (this.pending.isEmpty()) return;
+        Iterator<UUID> iterator = this.pending.iterator();
+        while (iterator.hasNext()) {
+            UUID uuid = iterator.next();
+            iterator.remove();
+            ServerPlayer player = server.getPlayerList().getPlayer(uuid);
+            if (player != null) this.evaluate(player);
+        }
+    }
+
+    /**
+     * Drops every indexed node and key, so they are resolved again when next queried.
+     */
+    void clear() {
+        this.permissions.clear();
+        this.options.clear();
+        this.pending.clear();
+    }
+
+    private void evaluate(ServerPlayer player) {
+        UUID uuid = player.getUUID();
+        for (Map.Entry<String, Set<UUID>> permission : this.permissions.entrySet()) {
+            if (has(player, permission.getKey())) {
+                permission.getValue().add(uuid);
+            } else {
+                permission.getValue().remove(uuid);
+            }
+        }
+        for (Map.Entry<String, OptionIndex> option : this.options.entrySet()) {
+            option.getValue().update(uuid, PermissionProviders.getOption(player, option.getKey()).orElse(null));
+        }
+    }
+
+    private static boolean has(ServerPlayer player, String permission) {
+        return PermissionProviders.getPermissionValue(player, permission) == Tristate.TRUE;
+    }
+
+    private static List<ServerPlayer> resolve(MinecraftServer server, Set<UUID> uuids, List<ServerPlayer> into) {
+        for (UUID uuid : uuids) {
+            // looked up by uuid, as respawning replaces the player entity
+            ServerPlayer player = server.getPlayerList().getPlayer(uuid);
+            if (player != null) into.add(player);
+        }
+        return into;
+    }
+
+    /**
+     * The online players of one option key, grouped by value.
+     */
+    private static final class OptionIndex {
+        private final ConcurrentHashMap<String, Set<UUID>> players = new ConcurrentHashMap<>();
+        private final ConcurrentHashMap<UUID, String> values = new ConcurrentHashMap<>();
+
+        private void update(UUID uuid, @Nullable String value) {
+            String previous = value == null ? this.values.remove(uuid) : this.values.put(uuid, value);
+            if (Objects.equals(previous, value)) return;
+            if (previous != null) {
+                this.players.computeIfPresent(previous, (key, players) -> {
+                    players.remove(uuid);
+                    return players.isEmpty() ? null : players;
+                });
+            }
+            if (value != null) this.players.computeIfAbsent(value, key -> ConcurrentHashMap.newKeySet()).add(uuid);
+        }
+    }
+}
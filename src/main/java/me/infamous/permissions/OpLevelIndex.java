@@ -0,0 +1,72 @@
+package me.infamous.permissions;
+
+import com.mojang.authlib.GameProfile;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.players.ServerOpListEntry;
+
+import javax.annotation.Nullable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * An immutable copy of the server's op list, keyed by uuid, so the permission level fallback
+ * is a single map read that is safe from any thread instead of a lookup in the (unsynchronized)
+ * op list.
+ *
+ * <p>The copy is rebuilt on the server thread at the end of the tick after an {@code op},
+ * {@code deop} or {@code reload} command, including one run through {@code execute ... run},
+ * and after the level of an online player changes. Changes made some other way, such as from a
+ * function or by another mod, are picked up by the periodic rebuild, so the level of an offline
+ * player can be up to a minute stale. It is only used on dedicated servers, since integrated
+ * servers grant levels to players that are not ops.</p>
+ */
+final class OpLevelIndex {
+    @Nullable
+    private volatile Map<UUID, Integer> levels;
+    private volatile boolean dirty;
+
+    /**
+     * Gets the permission level of a player.
+     *
+     * @param uuid the player uuid
+     * @return the level, or -1 if the index is not available and the server must be asked instead
+     */
+    int get(UUID uuid) {
+        Map<UUID, Integer> levels = this.levels;
+        if (levels == null) return -1;
+        return levels.getOrDefault(uuid, 0);
+    }
+
+    void markDirty() {
+        this.dirty = true;
+    }
+
+    boolean isDirty() {
+        return this.dirty;
+    }
+
+    /**
+     * Rebuilds the index. Must be called on the server thread.
+     */
+    void rebuild(MinecraftServer server) {
+        this.dirty = false;
+        if (!server.isDedicatedServer()) {
+            this.levels = null;
+            return;
+        }
+        Map<UUID, Integer> levels = new HashMap<>();
+        for (ServerOpListEntry entry : server.getPlayerList().getOps().getEntries()) {
+            GameProfile profile = entry.getUser();
+            if (profile != null && profile.getId() != null) {
+                levels.put(profile.getId(), server.getProfilePermissions(profile));
+            }
+        }
+        this.levels = Map.copyOf(levels);
+    }
+
+    void clear() {
+        this.levels = null;
+        this.dirty = false;
+    }
+}
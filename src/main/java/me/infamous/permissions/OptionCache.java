@@ -0,0 +1,52 @@
+package me.infamous.permissions;
+
+import net.minecraft.server.level.ServerPlayer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Memoizes parsed option values per player until LuckPerms recalculates that player's data,
+ * or a provider calls {@link PermissionProviders#invalidate(java.util.UUID)}.
+ *
+ * <p>Values are only memoized in a {@link PermissionCache} entry a provider created for a
+ * player with a backing user. Fake players and players without a LuckPerms user never get
+ * one, as nothing would invalidate it, so their options are resolved on every read.</p>
+ */
+public final class OptionCache {
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    private OptionCache() {
+    }
+
+    /**
+     * Allocates a dense id for a typed option.
+     *
+     * @return the option id
+     */
+    public static int nextId() {
+        return IDS.getAndIncrement();
+    }
+
+    /**
+     * Gets the memoized value of an option for the given player, resolving it with
+     * {@code loader} if it is not cached yet.
+     *
+     * @param player the player
+     * @param id the option id
+     * @param loader resolves and parses the option, never returning {@code null}
+     * @return the memoized value
+     */
+    public static Object get(ServerPlayer player, int id, Function<ServerPlayer, Object> loader) {
+        PermissionCache.Entry cached = PermissionsMod.PERMISSION_CACHE.peek(player.getUUID());
+        Object value = cached == null ? null : cached.getOption(id);
+        PermissionMetrics.optionCache(value != null);
+        if (value == null) {
+            value = loader.apply(player);
+            // resolving the option creates the entry if the player has a backing user
+            if (cached == null) cached = PermissionsMod.PERMISSION_CACHE.peek(player.getUUID());
+            if (cached != null) cached.putOption(id, value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,74 @@
+package me.infamous.permissions;
+
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.world.entity.Entity;
+
+import javax.annotation.Nullable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Answers option requests made through {@link me.lucko.fabric.api.permissions.v0.Options}.
+ *
+ * <p>Providers are registered with {@link PermissionProviders#registerOptionProvider(OptionProvider)}
+ * and are called directly, without posting an event.</p>
+ */
+@FunctionalInterface
+public interface OptionProvider {
+
+    /**
+     * Gets the value of an option for the given source.
+     *
+     * @param source the source
+     * @param key the option key
+     * @return the option value, or {@code null} to defer to the next provider
+     */
+    @Nullable
+    String getOption(CommandSourceStack source, String key);
+
+    /**
+     * Gets the value of an option for the given entity.
+     *
+     * <p>Providers that can resolve an entity directly should override this to avoid
+     * building a {@link CommandSourceStack} for every request.</p>
+     *
+     * @param entity the entity
+     * @param key the option key
+     * @return the option value, or {@code null} to defer to the next provider
+     */
+    @Nullable
+    default String getOption(Entity entity, String key) {
+        return this.getOption(entity.createCommandSourceStack(), key);
+    }
+
+    /**
+     * Gets the values of several options for the given source.
+     *
+     * <p>Providers that resolve the source to a backing user should override this to
+     * resolve it once for all keys.</p>
+     *
+     * @param source the source
+     * @param keys the option keys
+     * @return the values of the options this provider knows about, keyed by option key
+     */
+    default Map<String, String> getOptions(CommandSourceStack source, Collection<String> keys) {
+        Map<String, String> values = new HashMap<>();
+        for (String key : keys) {
+            String value = this.getOption(source, key);
+            if (value != null) values.put(key, value);
+        }
+        return values;
+    }
+
+    /**
+     * Gets every option this provider knows about for the given source.
+     *
+     * @param source the source
+     * @return the values of the options, keyed by option key
+     */
+    default Map<String, String> getAllOptions(CommandSourceStack source) {
+        return Collections.emptyMap();
+    }
+}
@@ -1,6 +1,7 @@
 package me.infamous.permissions;
 
 import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.world.entity.Entity;
 import net.minecraftforge.eventbus.api.Event;
 
 import javax.annotation.Nullable;
@@ -8,20 +9,37 @@ import java.util.Optional;
 
 public class OptionRequestEvent extends Event {
 
-    private final CommandSourceStack source;
+    @Nullable
+    private final Entity entity;
+    @Nullable
+    private CommandSourceStack source;
     private final String key;
     @Nullable
     private String value;
 
     public OptionRequestEvent(CommandSourceStack source, String key){
+        this.entity = null;
         this.source = source;
         this.key = key;
     }
 
+    public OptionRequestEvent(Entity entity, String key){
+        this.entity = entity;
+        this.key = key;
+    }
+
     public CommandSourceStack getSource() {
+        if (this.source == null) {
+            this.source = this.entity.createCommandSourceStack();
+        }
         return this.source;
     }
 
+    @Nullable
+    public Entity getEntity() {
+        return this.entity != null ? this.entity : this.source.getEntity();
+    }
+
     public String getKey() {
         return this.key;
     }
@@ -0,0 +1,205 @@
+package me.infamous.permissions;
+
+import net.minecraft.server.players.PlayerList;
+
+import javax.annotation.Nullable;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * Caches resolved permission states per player, keyed by {@link NodeKeys node id}, along with
+ * parsed {@link OptionCache option values}.
+ *
+ * <p>States are packed two bits per node into a copy-on-write {@code long[]}, so reads are a
+ * single volatile array read and never lock. The array, and so the copy made on every miss, is
+ * bounded by the {@link PermissionsConfig#NODE_IDS node id limit}. Nodes without an id are kept
+ * in a map of at most {@value #MAX_UNKEYED} nodes per player, and are not cached past that.
+ * Entries are dropped wholesale on invalidation; a write racing with an invalidation lands in
+ * the dropped entry and is never observed.</p>
+ */
+final class PermissionCache {
+    private static final int BITS = 2;
+    private static final int NODES_PER_WORD = Long.SIZE / BITS;
+    private static final long MASK = (1L << BITS) - 1;
+    private static final long[] EMPTY = new long[0];
+    private static final Object[] NO_OPTIONS = new Object[0];
+    private static final int MAX_UNKEYED = 256;
+
+    private final ConcurrentHashMap<UUID, Entry> entries = new ConcurrentHashMap<>();
+
+    Entry entry(UUID uuid) {
+        Entry entry = this.entries.get(uuid);
+        if (entry != null) return entry;
+        return this.entries.computeIfAbsent(uuid, k -> new Entry());
+    }
+
+    /**
+     * Gets the entry of a player without creating one.
+     *
+     * @param uuid the player uuid
+     * @return the entry, or {@code null} if nothing is cached for the player
+     */
+    @Nullable
+    Entry peek(UUID uuid) {
+        return this.entries.get(uuid);
+    }
+
+    void invalidate(UUID uuid) {
+        this.entries.remove(uuid);
+    }
+
+    /**
+     * Drops the entries of players that are not online. Fake players and NPCs never log out, so
+     * this is the only thing that removes entries created for them.
+     *
+     * @param players the online players
+     */
+    void retainOnline(PlayerList players) {
+        this.entries.keySet().removeIf(uuid -> players.getPlayer(uuid) == null);
+    }
+
+    void invalidateAll() {
+        this.entries.clear();
+    }
+
+    int size() {
+        return this.entries.size();
+    }
+
+    static final class Entry {
+        private static final AtomicReferenceFieldUpdater<Entry, long[]> STATES =
+                AtomicReferenceFieldUpdater.newUpdater(Entry.class, long[].class, "states");
+        private static final AtomicReferenceFieldUpdater<Entry, Object[]> OPTIONS =
+                AtomicReferenceFieldUpdater.newUpdater(Entry.class, Object[].class, "options");
+
+        private volatile long[] states = EMPTY;
+        private volatile Object[] options = NO_OPTIONS;
+        @Nullable
+        private volatile ConcurrentHashMap<String, Tristate> unkeyed;
+        private volatile boolean requirementsResolved;
+        @Nullable
+        private volatile PermissionTrie trie;
+
+        /**
+         * Gets the cached state of a node.
+         *
+         * @param id the node id
+         * @return the cached state, or {@code null} if the node has not been resolved yet
+         */
+        @Nullable
+        Tristate get(int id) {
+            long[] states = this.states;
+            int word = id / NODES_PER_WORD;
+            if (word >= states.length) return null;
+            return decode((int) ((states[word] >>> shift(id)) & MASK));
+        }
+
+        /**
+         * Gets the cached state of a node that may not have an id.
+         *
+         * @param id the node id, or {@link NodeKeys#NO_ID}
+         * @param permission the node
+         * @return the cached state, or {@code null} if the node has not been resolved yet
+         */
+        @Nullable
+        Tristate get(int id, String permission) {
+            if (id != NodeKeys.NO_ID) return this.get(id);
+            ConcurrentHashMap<String, Tristate> unkeyed = this.unkeyed;
+            return unkeyed == null ? null : unkeyed.get(permission);
+        }
+
+        void put(int id, String permission, Tristate state) {
+            if (id != NodeKeys.NO_ID) {
+                this.put(id, state);
+                return;
+            }
+            ConcurrentHashMap<String, Tristate> unkeyed = this.unkeyed;
+            if (unkeyed == null) {
+                synchronized (this) {
+                    unkeyed = this.unkeyed;
+                    if (unkeyed == null) this.unkeyed = unkeyed = new ConcurrentHashMap<>();
+                }
+            }
+            if (unkeyed.size() < MAX_UNKEYED) unkeyed.put(permission, state);
+        }
+
+        void put(int id, Tristate state) {
+            int word = id / NODES_PER_WORD;
+            long bits = (long) encode(state) << shift(id);
+            long clear = ~(MASK << shift(id));
+            long[] current;
+            long[] updated;
+            do {
+                current = this.states;
+                updated = Arrays.copyOf(current, Math.max(current.length, word + 1));
+                updated[word] = (updated[word] & clear) | bits;
+            } while (!STATES.compareAndSet(this, current, updated));
+        }
+
+        /**
+         * Marks the {@link RequirementIndex command requirements} as resolved for this entry.
+         *
+         * @return {@code true} if they had not been resolved yet
+         */
+        boolean claimRequirements() {
+            if (this.requirementsResolved) return false;
+            this.requirementsResolved = true;
+            return true;
+        }
+
+        @Nullable
+        PermissionTrie getTrie() {
+            return this.trie;
+        }
+
+        void setTrie(PermissionTrie trie) {
+            this.trie = trie;
+        }
+
+        /**
+         * Gets a cached, already parsed option value.
+         *
+         * @param id the option id
+         * @return the cached value, or {@code null} if the option has not been resolved yet
+         */
+        @Nullable
+        Object getOption(int id) {
+            Object[] options = this.options;
+            return id < options.length ? options[id] : null;
+        }
+
+        void putOption(int id, Object value) {
+            Object[] current;
+            Object[] updated;
+            do {
+                current = this.options;
+                updated = Arrays.copyOf(current, Math.max(current.length, id + 1));
+                updated[id] = value;
+            } while (!OPTIONS.compareAndSet(this, current, updated));
+        }
+
+        private static int shift(int id) {
+            return (id % NODES_PER_WORD) * BITS;
+        }
+
+        private static int encode(Tristate state) {
+            switch (state) {
+                case TRUE: return 1;
+                case FALSE: return 2;
+                default: return 3;
+            }
+        }
+
+        @Nullable
+        private static Tristate decode(int bits) {
+            switch (bits) {
+                case 1: return Tristate.TRUE;
+                case 2: return Tristate.FALSE;
+                case 3: return Tristate.UNDEFINED;
+                default: return null;
+            }
+        }
+    }
+}
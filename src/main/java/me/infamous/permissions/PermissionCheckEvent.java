@@ -2,19 +2,31 @@ package me.infamous.permissions;
 
 import net.luckperms.api.util.Tristate;
 import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.world.entity.Entity;
 import net.minecraftforge.eventbus.api.Event;
 
+import javax.annotation.Nullable;
+
 public class PermissionCheckEvent extends Event {
 
-    private final CommandSourceStack source;
+    @Nullable
+    private final Entity entity;
+    @Nullable
+    private CommandSourceStack source;
     private final String permission;
     private Tristate state = Tristate.UNDEFINED;
 
     public PermissionCheckEvent(CommandSourceStack source, String permission){
+        this.entity = null;
         this.source = source;
         this.permission = permission;
     }
 
+    public PermissionCheckEvent(Entity entity, String permission){
+        this.entity = entity;
+        this.permission = permission;
+    }
+
     public Tristate getState(){
         return this.state;
     }
@@ -24,9 +36,17 @@ public class PermissionCheckEvent extends Event {
     }
 
     public CommandSourceStack getSource() {
+        if (this.source == null) {
+            this.source = this.entity.createCommandSourceStack();
+        }
         return this.source;
     }
 
+    @Nullable
+    public Entity getEntity() {
+        return this.entity != null ? this.entity : this.source.getEntity();
+    }
+
     public String getPermission() {
         return this.permission;
     }
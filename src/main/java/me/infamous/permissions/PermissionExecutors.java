@@ -0,0 +1,170 @@
+package me.infamous.permissions;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Owns the executor that asynchronous permission results are completed on, as selected by
+ * {@link PermissionsConfig#ASYNC_EXECUTOR}.
+ *
+ * <p>Results that are already known are always completed on the calling thread rather than
+ * being handed to the executor.</p>
+ */
+public final class PermissionExecutors {
+    private static final LongAdder SUBMITTED = new LongAdder();
+    private static final LongAdder STARTED = new LongAdder();
+    private static final LongAdder QUEUED = new LongAdder();
+    private static final LongAdder QUEUE_NANOS = new LongAdder();
+    private static final AtomicLong MAX_QUEUE_NANOS = new AtomicLong();
+
+    private static volatile PermissionsConfig.ExecutorType type = PermissionsConfig.ExecutorType.POOL;
+    private static volatile Executor executor = ForkJoinPool.commonPool();
+    private static ExecutorService owned;
+    private static PermissionsConfig.ExecutorType requestedType;
+    private static int requestedPoolSize;
+
+    private PermissionExecutors() {
+    }
+
+    /**
+     * Applies {@code fn} to the result of {@code future}, hopping to the configured executor
+     * only if the result is not known yet.
+     *
+     * @param future the future
+     * @param fn the function to apply
+     * @param <T> the type of the result of the future
+     * @param <R> the type of the transformed result
+     * @return the transformed future
+     */
+    public static <T, R> CompletableFuture<R> thenApply(CompletableFuture<T> future, Function<? super T, ? extends R> fn) {
+        if (future.isDone() || type == PermissionsConfig.ExecutorType.DIRECT) {
+            return future.thenApply(fn);
+        }
+        return future.thenApplyAsync(fn, PermissionExecutors::execute);
+    }
+
+    /**
+     * Runs {@code task} on the configured executor, or on the calling thread if completions
+     * are {@link PermissionsConfig.ExecutorType#DIRECT direct}.
+     *
+     * @param task the task
+     * @return a future completed once the task has run
+     */
+    static CompletableFuture<Void> runAsync(Runnable task) {
+        if (type == PermissionsConfig.ExecutorType.DIRECT) {
+            task.run();
+            return CompletableFuture.completedFuture(null);
+        }
+        return CompletableFuture.runAsync(task, PermissionExecutors::execute);
+    }
+
+    public static long getQueueDepth() {
+        return SUBMITTED.sum() - STARTED.sum();
+    }
+
+    public static long getCompletedTasks() {
+        return STARTED.sum();
+    }
+
+    public static double getAverageQueueLatencyMillis() {
+        long queued = QUEUED.sum();
+        return queued == 0 ? 0 : QUEUE_NANOS.sum() / (double) queued / 1_000_000;
+    }
+
+    public static double getMaxQueueLatencyMillis() {
+        return MAX_QUEUE_NANOS.get() / 1_000_000D;
+    }
+
+    /**
+     * Clears the queue latency figures. The queue depth and completed task count are not
+     * affected, as they are derived from running totals.
+     */
+    static void resetLatency() {
+        QUEUED.reset();
+        QUEUE_NANOS.reset();
+        MAX_QUEUE_NANOS.set(0);
+    }
+
+    /**
+     * Switches to the requested executor, unless it is the one already in use. The previous
+     * executor is only shut down once the new one is published, and tasks it rejects after
+     * that are handed to the new one.
+     */
+    static synchronized void configure(PermissionsConfig.ExecutorType requested, int poolSize) {
+        if (requested == requestedType && poolSize == requestedPoolSize) return;
+        requestedType = requested;
+        requestedPoolSize = poolSize;
+        ExecutorService previous = owned;
+        PermissionsConfig.ExecutorType selected = requested;
+        ExecutorService created = null;
+        if (selected == PermissionsConfig.ExecutorType.VIRTUAL) {
+            created = newVirtualThreadPerTaskExecutor();
+            if (created == null) {
+                PermissionsMod.LOGGER.warn("Virtual threads require Java 21 or newer, falling back to a pool of {} threads", poolSize);
+                selected = PermissionsConfig.ExecutorType.POOL;
+            }
+        }
+        if (selected == PermissionsConfig.ExecutorType.POOL) {
+            created = Executors.newFixedThreadPool(poolSize, new NamedThreadFactory());
+        }
+        owned = created;
+        executor = created != null ? created : ForkJoinPool.commonPool();
+        type = selected;
+        if (previous != null) {
+            previous.shutdown();
+        }
+    }
+
+    private static void execute(Runnable task) {
+        long submitted = System.nanoTime();
+        SUBMITTED.increment();
+        Runnable timed = () -> {
+            long waited = System.nanoTime() - submitted;
+            STARTED.increment();
+            QUEUED.increment();
+            QUEUE_NANOS.add(waited);
+            MAX_QUEUE_NANOS.accumulateAndGet(waited, Math::max);
+            task.run();
+        };
+        Executor current = executor;
+        while (true) {
+            try {
+                current.execute(timed);
+                return;
+            } catch (RejectedExecutionException e) {
+                // the executor was replaced and shut down while the task was handed to it
+                Executor replacement = executor;
+                if (replacement == current) throw e;
+                current = replacement;
+            }
+        }
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "permissions-api-async-" + this.count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package me.infamous.permissions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts and times the calls served through {@link PermissionProviders}, per API and per node.
+ *
+ * <p>Everything is recorded into striped {@link LongAdder}s and fixed power-of-two latency
+ * buckets, so recording never locks or allocates; the work of sorting and summarising is only
+ * done when a {@link #snapshot() snapshot} is taken. Recording can be turned off with
+ * {@link PermissionsConfig#METRICS_ENABLED}.</p>
+ */
+public final class PermissionMetrics {
+    /**
+     * Returned by {@link #start()} when metrics are disabled, so nothing is recorded for the call.
+     */
+    static final long DISABLED = Long.MIN_VALUE;
+
+    private static final Map<Api, Timer> TIMERS = new EnumMap<>(Api.class);
+    private static final LongAdder PERMISSION_CACHE_HITS = new LongAdder();
+    private static final LongAdder PERMISSION_CACHE_MISSES = new LongAdder();
+    private static final LongAdder OPTION_CACHE_HITS = new LongAdder();
+    private static final LongAdder OPTION_CACHE_MISSES = new LongAdder();
+
+    private static volatile boolean enabled = true;
+    private static volatile Node[] nodes = new Node[64];
+
+    static {
+        for (Api api : Api.values()) {
+            TIMERS.put(api, new Timer());
+        }
+    }
+
+    private PermissionMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Takes a consistent-enough snapshot of the metrics. Counters are read one at a time, so
+     * calls racing with the snapshot may be counted in some figures and not others.
+     *
+     * @param topNodes the number of most checked nodes to include
+     * @return the snapshot
+     */
+    public static MetricsSnapshot snapshot(int topNodes) {
+        Map<Api, MetricsSnapshot.Timer> apis = new EnumMap<>(Api.class);
+        TIMERS.forEach((api, timer) -> apis.put(api, timer.snapshot()));
+
+        Node[] nodes = PermissionMetrics.nodes;
+        List<MetricsSnapshot.Node> checked = new ArrayList<>();
+        for (int id = 0; id < nodes.length; id++) {
+            Node node = nodes[id];
+            if (node != null) checked.add(new MetricsSnapshot.Node(NodeKeys.key(id), node.timer.snapshot()));
+        }
+        checked.sort((a, b) -> Long.compare(b.getTimer().getCount(), a.getTimer().getCount()));
+
+        return new MetricsSnapshot(
+                Collections.unmodifiableMap(apis),
+                Collections.unmodifiableList(new ArrayList<>(checked.subList(0, Math.min(topNodes, checked.size())))),
+                PERMISSION_CACHE_HITS.sum(), PERMISSION_CACHE_MISSES.sum(),
+                OPTION_CACHE_HITS.sum(), OPTION_CACHE_MISSES.sum(),
+                PermissionsMod.OFFLINE_USERS.getHits(), PermissionsMod.OFFLINE_USERS.getMisses(),
+                PermissionsMod.OFFLINE_USERS.getEvictions(), PermissionsMod.OFFLINE_USERS.size(),
+                PermissionsMod.PERMISSION_CACHE.size(),
+                PermissionExecutors.getQueueDepth(), PermissionExecutors.getAverageQueueLatencyMillis(),
+                PermissionExecutors.getMaxQueueLatencyMillis(),
+                AuditLog.getRecorded(), AuditLog.getWritten(), AuditLog.getDropped(), AuditLog.getFailed());
+    }
+
+    /**
+     * Clears every counter, for example to measure a single scenario. This includes the offline
+     * user cache, async queue latency and audit log figures; the sizes and queue depth are current
+     * values, not counters, and are unaffected.
+     */
+    public static synchronized void reset() {
+        TIMERS.values().forEach(Timer::reset);
+        nodes = new Node[nodes.length];
+        PERMISSION_CACHE_HITS.reset();
+        PERMISSION_CACHE_MISSES.reset();
+        OPTION_CACHE_HITS.reset();
+        OPTION_CACHE_MISSES.reset();
+        PermissionsMod.OFFLINE_USERS.resetStats();
+        PermissionExecutors.resetLatency();
+        AuditLog.resetStats();
+    }
+
+    /**
+     * Visits the running totals of every node checked since the last {@link #reset()}.
+     */
+    static void visitNodes(NodeVisitor visitor) {
+        Node[] nodes = PermissionMetrics.nodes;
+        for (int id = 0; id < nodes.length; id++) {
+            Node node = nodes[id];
+            if (node != null) visitor.visit(id, node.timer.count.sum(), node.timer.totalNanos.sum());
+        }
+    }
+
+    static void setEnabled(boolean enabled) {
+        PermissionMetrics.enabled = enabled;
+    }
+
+    static long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    static void record(Api api, long start) {
+        if (start == DISABLED) return;
+        TIMERS.get(api).record(System.nanoTime() - start);
+    }
+
+    static void record(Api api, String node, long start) {
+        if (start == DISABLED) return;
+        record(api, NodeKeys.id(node), start);
+    }
+
+    static void record(Api api, int id, long start) {
+        if (start == DISABLED) return;
+        long nanos = System.nanoTime() - start;
+        TIMERS.get(api).record(nanos);
+        if (id != NodeKeys.NO_ID) node(id).timer.record(nanos);
+    }
+
+    static void permissionCache(boolean hit) {
+        if (enabled) (hit ? PERMISSION_CACHE_HITS : PERMISSION_CACHE_MISSES).increment();
+    }
+
+    static void optionCache(boolean hit) {
+        if (enabled) (hit ? OPTION_CACHE_HITS : OPTION_CACHE_MISSES).increment();
+    }
+
+    private static Node node(int id) {
+        Node[] nodes = PermissionMetrics.nodes;
+        if (id < nodes.length) {
+            Node node = nodes[id];
+            if (node != null) return node;
+        }
+        return createNode(id);
+    }
+
+    private static synchronized Node createNode(int id) {
+        Node[] nodes = PermissionMetrics.nodes;
+        if (id >= nodes.length) {
+            nodes = Arrays.copyOf(nodes, Math.max(nodes.length * 2, id + 1));
+        } else if (nodes[id] != null) {
+            return nodes[id];
+        } else {
+            nodes = nodes.clone();
+        }
+        Node node = new Node();
+        nodes[id] = node;
+        PermissionMetrics.nodes = nodes;
+        return node;
+    }
+
+    /**
+     * The entry points of {@link PermissionProviders} that are timed, and the login warmup
+     * of {@link me.lucko.fabric.api.permissions.v0.Permissions#declare(String, boolean) declared nodes}.
+     */
+    public enum Api {
+        PERMISSION,
+        PERMISSION_BATCH,
+        OFFLINE_PERMISSION,
+        OFFLINE_PERMISSION_BATCH,
+        OPTION,
+        OPTION_BATCH,
+        WARMUP
+    }
+
+    @FunctionalInterface
+    interface NodeVisitor {
+        void visit(int id, long checks, long totalNanos);
+    }
+
+    private static final class Node {
+        private final Timer timer = new Timer();
+    }
+
+    /**
+     * A call counter with a latency histogram of power-of-two nanosecond buckets.
+     */
+    private static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final LongAdder[] buckets = new LongAdder[MetricsSnapshot.Timer.BUCKETS];
+
+        private Timer() {
+            for (int i = 0; i < this.buckets.length; i++) {
+                this.buckets[i] = new LongAdder();
+            }
+        }
+
+        private void record(long nanos) {
+            if (nanos < 0) nanos = 0;
+            this.count.increment();
+            this.totalNanos.add(nanos);
+            this.buckets[Math.min(Long.SIZE - Long.numberOfLeadingZeros(nanos), this.buckets.length - 1)].increment();
+            // only contend on the max when it actually changes
+            long max = this.maxNanos.get();
+            if (nanos > max) this.maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        private MetricsSnapshot.Timer snapshot() {
+            long[] buckets = new long[this.buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = this.buckets[i].sum();
+            }
+            return new MetricsSnapshot.Timer(this.count.sum(), this.totalNanos.sum(), this.maxNanos.get(), buckets);
+        }
+
+        private void reset() {
+            this.count.reset();
+            this.totalNanos.reset();
+            this.maxNanos.set(0);
+            for (LongAdder bucket : this.buckets) {
+                bucket.reset();
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package me.infamous.permissions;
+
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.world.entity.Entity;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Answers online permission checks made through {@link me.lucko.fabric.api.permissions.v0.Permissions}.
+ *
+ * <p>Providers are registered with {@link PermissionProviders#registerPermissionProvider(PermissionProvider)}
+ * and are called directly, without posting an event.</p>
+ */
+@FunctionalInterface
+public interface PermissionProvider {
+
+    /**
+     * Gets the {@link Tristate state} of a {@code permission} for the given source.
+     *
+     * @param source the source
+     * @param permission the permission
+     * @return the state of the permission, or {@link Tristate#UNDEFINED} to defer to the next provider
+     */
+    Tristate getPermissionValue(CommandSourceStack source, String permission);
+
+    /**
+     * Gets the {@link Tristate state} of a {@code permission} for the given entity.
+     *
+     * <p>Providers that can resolve an entity directly should override this to avoid
+     * building a {@link CommandSourceStack} for every check.</p>
+     *
+     * @param entity the entity
+     * @param permission the permission
+     * @return the state of the permission, or {@link Tristate#UNDEFINED} to defer to the next provider
+     */
+    default Tristate getPermissionValue(Entity entity, String permission) {
+        return this.getPermissionValue(entity.createCommandSourceStack(), permission);
+    }
+
+    /**
+     * Gets the {@link Tristate state} of a {@code permission} whose {@link NodeKeys id} is already
+     * known, as for checks through a {@link me.lucko.fabric.api.permissions.v0.PermissionNode}.
+     *
+     * <p>Providers that keep per-node state by id should override this rather than looking the
+     * id up again.</p>
+     *
+     * @param source the source
+     * @param id the id of the permission
+     * @param permission the permission
+     * @return the state of the permission, or {@link Tristate#UNDEFINED} to defer to the next provider
+     */
+    default Tristate getPermissionValue(CommandSourceStack source, int id, String permission) {
+        return this.getPermissionValue(source, permission);
+    }
+
+    /**
+     * Gets the {@link Tristate state} of a {@code permission} whose {@link NodeKeys id} is already
+     * known for the given entity.
+     *
+     * @param entity the entity
+     * @param id the id of the permission
+     * @param permission the permission
+     * @return the state of the permission, or {@link Tristate#UNDEFINED} to defer to the next provider
+     * @see #getPermissionValue(CommandSourceStack, int, String)
+     */
+    default Tristate getPermissionValue(Entity entity, int id, String permission) {
+        return this.getPermissionValue(entity, permission);
+    }
+
+    /**
+     * Gets the {@link Tristate states} of several permissions for the given source.
+     *
+     * <p>Providers that resolve the source to a backing user should override this to
+     * resolve it once for all permissions.</p>
+     *
+     * @param source the source
+     * @param permissions the permissions
+     * @return the states of the permissions, in the same order as {@code permissions}
+     */
+    default Tristate[] getPermissionValues(CommandSourceStack source, String[] permissions) {
+        Tristate[] states = new Tristate[permissions.length];
+        for (int i = 0; i < permissions.length; i++) {
+            states[i] = this.getPermissionValue(source, permissions[i]);
+        }
+        return states;
+    }
+
+    /**
+     * Gets every permission explicitly set for the given source that starts with {@code prefix}.
+     *
+     * @param source the source
+     * @param prefix the prefix, matched as a plain string
+     * @return the values of the matching permissions this provider knows about, keyed by permission
+     */
+    default Map<String, Boolean> getPermissionsByPrefix(CommandSourceStack source, String prefix) {
+        return Collections.emptyMap();
+    }
+}
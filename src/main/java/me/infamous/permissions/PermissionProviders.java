@@ -0,0 +1,605 @@
+package me.infamous.permissions;
+
+import com.mojang.authlib.GameProfile;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+import net.minecraftforge.common.MinecraftForge;
+import net.minecraftforge.eventbus.ListenerList;
+import net.minecraftforge.eventbus.api.EventListenerHelper;
+import net.minecraftforge.server.ServerLifecycleHooks;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * The provider chain consulted by {@link me.lucko.fabric.api.permissions.v0.Permissions} and
+ * {@link me.lucko.fabric.api.permissions.v0.Options}.
+ *
+ * <p>Providers are consulted most recently registered first, and the first defined answer wins.
+ * The matching event ({@link PermissionCheckEvent}, {@link OfflinePermissionCheckEvent} or
+ * {@link OptionRequestEvent}) is then only posted if something is listening for it, pre-filled
+ * with the answer from the chain.</p>
+ */
+public final class PermissionProviders {
+    private static final CompletableFuture<Tristate> UNDEFINED = CompletableFuture.completedFuture(Tristate.UNDEFINED);
+    private static final int BUS_ID = findBusId();
+    private static final ListenerList OPTION_LISTENERS = EventListenerHelper.getListenerList(OptionRequestEvent.class);
+
+    private static volatile PermissionProvider[] permissionProviders = new PermissionProvider[0];
+    private static volatile OfflinePermissionProvider[] offlineProviders = new OfflinePermissionProvider[0];
+    private static volatile OptionProvider[] optionProviders = new OptionProvider[0];
+    private static volatile int offlineBatchParallelism = 16;
+
+    private PermissionProviders() {
+    }
+
+    public static synchronized void registerPermissionProvider(PermissionProvider provider) {
+        permissionProviders = prepend(permissionProviders, Objects.requireNonNull(provider, "provider"));
+    }
+
+    public static synchronized void registerOfflineProvider(OfflinePermissionProvider provider) {
+        offlineProviders = prepend(offlineProviders, Objects.requireNonNull(provider, "provider"));
+    }
+
+    public static synchronized void registerOptionProvider(OptionProvider provider) {
+        optionProviders = prepend(optionProviders, Objects.requireNonNull(provider, "provider"));
+    }
+
+    /**
+     * Drops everything cached for the given player, for providers whose answers change
+     * without LuckPerms recalculating the player.
+     *
+     * @param uuid the player uuid
+     */
+    public static void invalidate(UUID uuid) {
+        PermissionsMod.invalidate(Objects.requireNonNull(uuid, "uuid"));
+    }
+
+    public static Tristate getPermissionValue(CommandSourceStack source, String permission) {
+        return getPermissionValue(source, NodeKeys.id(permission), permission);
+    }
+
+    /**
+     * Gets the state of a permission whose {@link NodeKeys id} is already known, so it is not
+     * looked up again by the providers, metrics or events.
+     *
+     * @param source the source
+     * @param id the id of the permission
+     * @param permission the permission
+     * @return the state of the permission
+     */
+    public static Tristate getPermissionValue(CommandSourceStack source, int id, String permission) {
+        long start = PermissionMetrics.start();
+        JfrPermissionCheck recorded = JfrEvents.beginPermissionCheck();
+        boolean cached = recorded != null && JfrEvents.isCached(source.getEntity(), id, permission);
+        Tristate state = Tristate.UNDEFINED;
+        for (PermissionProvider provider : permissionProviders) {
+            state = provider.getPermissionValue(source, id, permission);
+            if (state != Tristate.UNDEFINED) break;
+        }
+        if (hasPermissionListeners()) {
+            state = post(new PermissionCheckEvent(source, permission), state);
+        }
+        PermissionMetrics.record(PermissionMetrics.Api.PERMISSION, id, start);
+        if (recorded != null) JfrEvents.commit(recorded, permission, JfrEvents.sourceType(source), state, cached);
+        AuditLog.permission(source, permission, state);
+        return state;
+    }
+
+    public static Tristate getPermissionValue(Entity entity, String permission) {
+        return getPermissionValue(entity, NodeKeys.id(permission), permission);
+    }
+
+    /**
+     * Gets the state of a permission whose {@link NodeKeys id} is already known for the given entity.
+     *
+     * @param entity the entity
+     * @param id the id of the permission
+     * @param permission the permission
+     * @return the state of the permission
+     * @see #getPermissionValue(CommandSourceStack, int, String)
+     */
+    public static Tristate getPermissionValue(Entity entity, int id, String permission) {
+        long start = PermissionMetrics.start();
+        JfrPermissionCheck recorded = JfrEvents.beginPermissionCheck();
+        boolean cached = recorded != null && JfrEvents.isCached(entity, id, permission);
+        Tristate state = Tristate.UNDEFINED;
+        for (PermissionProvider provider : permissionProviders) {
+            state = provider.getPermissionValue(entity, id, permission);
+            if (state != Tristate.UNDEFINED) break;
+        }
+        if (hasPermissionListeners()) {
+            state = post(new PermissionCheckEvent(entity, permission), state);
+        }
+        PermissionMetrics.record(PermissionMetrics.Api.PERMISSION, id, start);
+        if (recorded != null) JfrEvents.commit(recorded, permission, JfrEvents.sourceType(entity), state, cached);
+        AuditLog.permission(entity, permission, state);
+        return state;
+    }
+
+    public static Tristate[] getPermissionValues(CommandSourceStack source, String[] permissions) {
+        long start = PermissionMetrics.start();
+        Tristate[] states = new Tristate[permissions.length];
+        Arrays.fill(states, Tristate.UNDEFINED);
+        int undefined = permissions.length;
+        for (PermissionProvider provider : permissionProviders) {
+            if (undefined == 0) break;
+            String[] remaining = permissions;
+            int[] indices = null;
+            if (undefined != permissions.length) {
+                remaining = new String[undefined];
+                indices = new int[undefined];
+                for (int i = 0, j = 0; i < states.length; i++) {
+                    if (states[i] == Tristate.UNDEFINED) {
+                        indices[j] = i;
+                        remaining[j++] = permissions[i];
+                    }
+                }
+            }
+            Tristate[] resolved = provider.getPermissionValues(source, remaining);
+            for (int i = 0; i < resolved.length; i++) {
+                if (resolved[i] == Tristate.UNDEFINED) continue;
+                states[indices == null ? i : indices[i]] = resolved[i];
+                undefined--;
+            }
+        }
+        if (hasPermissionListeners()) {
+            for (int i = 0; i < permissions.length; i++) {
+                states[i] = post(new PermissionCheckEvent(source, permissions[i]), states[i]);
+            }
+        }
+        PermissionMetrics.record(PermissionMetrics.Api.PERMISSION_BATCH, start);
+        if (AuditLog.isEnabled()) {
+            for (int i = 0; i < permissions.length; i++) {
+                AuditLog.permission(source, permissions[i], states[i]);
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Gets every permission explicitly set for the given source that starts with {@code prefix}.
+     * Providers are merged so that more recently registered providers win.
+     *
+     * @param source the source
+     * @param prefix the prefix, matched as a plain string
+     * @return the values of the matching permissions, keyed by permission
+     */
+    public static Map<String, Boolean> getPermissionsByPrefix(CommandSourceStack source, String prefix) {
+        long start = PermissionMetrics.start();
+        PermissionProvider[] providers = permissionProviders;
+        Map<String, Boolean> values = new HashMap<>();
+        for (int i = providers.length - 1; i >= 0; i--) {
+            providers[i].getPermissionsByPrefix(source, prefix).forEach((permission, value) -> {
+                if (value != null) values.put(permission, value);
+            });
+        }
+        if (hasPermissionListeners()) {
+            for (String permission : new ArrayList<>(values.keySet())) {
+                Tristate state = post(new PermissionCheckEvent(source, permission), Tristate.of(values.get(permission)));
+                if (state == Tristate.UNDEFINED) {
+                    values.remove(permission);
+                } else {
+                    values.put(permission, state.asBoolean());
+                }
+            }
+        }
+        PermissionMetrics.record(PermissionMetrics.Api.PERMISSION_BATCH, start);
+        return Collections.unmodifiableMap(values);
+    }
+
+    /**
+     * Records the final outcome of a check, after any fallback, in the {@link AuditLog}.
+     *
+     * @param source the source the check was for
+     * @param permission the permission
+     * @param granted the outcome
+     * @return {@code granted}
+     */
+    public static boolean decided(CommandSourceStack source, String permission, boolean granted) {
+        AuditLog.check(source, permission, granted);
+        return granted;
+    }
+
+    /**
+     * Records the final outcome of a check, after any fallback, in the {@link AuditLog}.
+     *
+     * @param entity the entity the check was for
+     * @param permission the permission
+     * @param granted the outcome
+     * @return {@code granted}
+     */
+    public static boolean decided(Entity entity, String permission, boolean granted) {
+        AuditLog.check(entity, permission, granted);
+        return granted;
+    }
+
+    /**
+     * Records the final outcome of an offline check, after any fallback, in the {@link AuditLog}.
+     *
+     * @param uuid the player uuid
+     * @param permission the permission
+     * @param granted the outcome
+     * @return {@code granted}
+     */
+    public static boolean decided(UUID uuid, String permission, boolean granted) {
+        AuditLog.offlineCheck(uuid, permission, granted);
+        return granted;
+    }
+
+    /**
+     * Checks whether an entity has the given permission level, reading the op level of players
+     * from an index of the op list instead of the op list itself.
+     *
+     * @param entity the entity
+     * @param level the level
+     * @return whether the entity has the level
+     */
+    public static boolean hasPermissionLevel(Entity entity, int level) {
+        if (entity instanceof ServerPlayer) {
+            int opLevel = PermissionsMod.OP_LEVELS.get(entity.getUUID());
+            if (opLevel >= 0) return opLevel >= level;
+        }
+        return entity.hasPermissions(level);
+    }
+
+    /**
+     * Checks whether a (potentially offline) player has the given permission level. Unlike
+     * {@link MinecraftServer#getProfilePermissions(GameProfile)}, this is safe to call from any thread
+     * on a dedicated server.
+     *
+     * @param profile the player profile
+     * @param level the level
+     * @param server the server
+     * @return whether the player has the level
+     */
+    public static boolean hasPermissionLevel(GameProfile profile, int level, MinecraftServer server) {
+        int opLevel = profile.getId() == null ? -1 : PermissionsMod.OP_LEVELS.get(profile.getId());
+        if (opLevel >= 0) return opLevel >= level;
+        return server.getProfilePermissions(profile) >= level;
+    }
+
+    /**
+     * Declares a node, so it is resolved for players as they log in.
+     *
+     * @param permission the permission
+     */
+    public static void declare(String permission) {
+        PermissionsMod.DECLARED_NODES.declare(NodeKeys.validate(permission));
+    }
+
+    /**
+     * Subscribes to changes of a permission for a player.
+     *
+     * @param uuid the player uuid
+     * @param permission the permission
+     * @param listener called on the server thread with the new state when it changes
+     * @param player the player if online, to take the current state as the baseline right away
+     * @return the subscription
+     */
+    public static ChangeSubscription subscribePermission(UUID uuid, String permission, Consumer<Tristate> listener, @Nullable ServerPlayer player) {
+        return PermissionsMod.CHANGE_SUBSCRIPTIONS.subscribePermission(uuid, permission, listener, player);
+    }
+
+    /**
+     * Subscribes to changes of an option for a player.
+     *
+     * @param uuid the player uuid
+     * @param key the option key
+     * @param listener called on the server thread with the new value when it changes
+     * @param player the player if online, to take the current value as the baseline right away
+     * @return the subscription
+     */
+    public static ChangeSubscription subscribeOption(UUID uuid, String key, Consumer<Optional<String>> listener, @Nullable ServerPlayer player) {
+        return PermissionsMod.CHANGE_SUBSCRIPTIONS.subscribeOption(uuid, key, listener, player);
+    }
+
+    /**
+     * Gets the current {@link PermissionSnapshot} of a player. Only the snapshots of online
+     * players are kept; for anyone else a new one is built on every call.
+     *
+     * @param uuid the player uuid
+     * @return the snapshot, empty if LuckPerms has not loaded the player
+     */
+    public static PermissionSnapshot getSnapshot(UUID uuid) {
+        return PermissionsMod.SNAPSHOTS.get(Objects.requireNonNull(uuid, "uuid"));
+    }
+
+    /**
+     * Gets the online players a permission is granted to, from the {@link OnlineIndex}.
+     *
+     * @param permission the permission
+     * @return the players, empty if no server is running
+     */
+    public static List<ServerPlayer> getOnlineWith(String permission) {
+        MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+        if (server == null) return Collections.emptyList();
+        return PermissionsMod.ONLINE_INDEX.onlineWith(server, permission);
+    }
+
+    /**
+     * Gets the online players whose value of an option matches a predicate, from the {@link OnlineIndex}.
+     *
+     * @param key the option key
+     * @param predicate tested once per distinct value
+     * @return the players, empty if no server is running
+     */
+    public static List<ServerPlayer> getOnlineWhere(String key, Predicate<String> predicate) {
+        MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+        if (server == null) return Collections.emptyList();
+        return PermissionsMod.ONLINE_INDEX.onlineWhere(server, key, predicate);
+    }
+
+    public static CompletableFuture<Tristate> getPermissionValue(UUID uuid, String permission) {
+        long start = PermissionMetrics.start();
+        JfrOfflinePermissionCheck recorded = JfrEvents.beginOfflinePermissionCheck();
+        OfflinePermissionProvider[] providers = offlineProviders;
+        CompletableFuture<Tristate> state = providers.length == 0 ? UNDEFINED : providers[0].getPermissionValue(uuid, permission);
+        for (int i = 1; i < providers.length; i++) {
+            OfflinePermissionProvider next = providers[i];
+            state = state.thenCompose(triState -> {
+                if (triState != Tristate.UNDEFINED) {
+                    return CompletableFuture.completedFuture(triState);
+                }
+                return next.getPermissionValue(uuid, permission);
+            });
+        }
+        if (hasOfflinePermissionListeners()) {
+            OfflinePermissionCheckEvent event = new OfflinePermissionCheckEvent(uuid, permission);
+            event.setState(LuckPermsStates.toLuckPerms(state));
+            MinecraftForge.EVENT_BUS.post(event);
+            state = LuckPermsStates.fromLuckPerms(event.getState());
+        }
+        if (state.isDone()) {
+            PermissionMetrics.record(PermissionMetrics.Api.OFFLINE_PERMISSION, permission, start);
+            Tristate result = state.isCompletedExceptionally() ? null : state.getNow(null);
+            if (recorded != null) JfrEvents.commit(recorded, permission, result, true);
+            AuditLog.offlinePermission(uuid, permission, result);
+        } else if (start != PermissionMetrics.DISABLED || recorded != null || AuditLog.isEnabled()) {
+            state.whenComplete((result, error) -> {
+                PermissionMetrics.record(PermissionMetrics.Api.OFFLINE_PERMISSION, permission, start);
+                if (recorded != null) JfrEvents.commit(recorded, permission, result, false);
+                AuditLog.offlinePermission(uuid, permission, result);
+            });
+        }
+        return state;
+    }
+
+    public static CompletableFuture<Tristate[]> getPermissionValues(UUID uuid, String[] permissions) {
+        long start = PermissionMetrics.start();
+        // with listeners, every permission goes through getPermissionValue and is audited there
+        boolean audited = AuditLog.isEnabled() && !hasOfflinePermissionListeners();
+        CompletableFuture<Tristate[]> states = resolvePermissionValues(uuid, permissions);
+        if (states.isDone()) {
+            PermissionMetrics.record(PermissionMetrics.Api.OFFLINE_PERMISSION_BATCH, start);
+            if (audited) audit(uuid, permissions, states.isCompletedExceptionally() ? null : states.getNow(null));
+        } else if (start != PermissionMetrics.DISABLED || audited) {
+            states.whenComplete((result, error) -> {
+                PermissionMetrics.record(PermissionMetrics.Api.OFFLINE_PERMISSION_BATCH, start);
+                if (audited) audit(uuid, permissions, result);
+            });
+        }
+        return states;
+    }
+
+    private static void audit(UUID uuid, String[] permissions, @Nullable Tristate[] states) {
+        for (int i = 0; i < permissions.length; i++) {
+            AuditLog.offlinePermission(uuid, permissions[i], states == null ? null : states[i]);
+        }
+    }
+
+    private static CompletableFuture<Tristate[]> resolvePermissionValues(UUID uuid, String[] permissions) {
+        if (hasOfflinePermissionListeners()) {
+            @SuppressWarnings("unchecked")
+            CompletableFuture<Tristate>[] states = new CompletableFuture[permissions.length];
+            for (int i = 0; i < permissions.length; i++) {
+                states[i] = getPermissionValue(uuid, permissions[i]);
+            }
+            return allOf(states);
+        }
+        OfflinePermissionProvider[] providers = offlineProviders;
+        if (providers.length == 0) {
+            Tristate[] states = new Tristate[permissions.length];
+            Arrays.fill(states, Tristate.UNDEFINED);
+            return CompletableFuture.completedFuture(states);
+        }
+        CompletableFuture<Tristate[]> states = providers[0].getPermissionValues(uuid, permissions);
+        for (int i = 1; i < providers.length; i++) {
+            OfflinePermissionProvider next = providers[i];
+            states = states.thenCompose(resolved -> fillUndefined(next, uuid, permissions, resolved));
+        }
+        return states;
+    }
+
+    /**
+     * Resolves several permissions for many (potentially) offline players, loading a bounded
+     * number of players at a time.
+     *
+     * @param uuids the player uuids, duplicates are resolved once
+     * @param permissions the permissions
+     * @return the states of the permissions per player, in the same order as {@code permissions},
+     *         all {@link Tristate#UNDEFINED} for players that failed to load
+     */
+    public static CompletableFuture<Map<UUID, Tristate[]>> getPermissionValues(Collection<UUID> uuids, String[] permissions) {
+        return new OfflineBatch(new LinkedHashSet<>(uuids), permissions).run(offlineBatchParallelism);
+    }
+
+    static void setOfflineBatchParallelism(int parallelism) {
+        offlineBatchParallelism = parallelism;
+    }
+
+    public static Optional<String> getOption(CommandSourceStack source, String key) {
+        long start = PermissionMetrics.start();
+        JfrOptionRead recorded = JfrEvents.beginOptionRead();
+        String value = null;
+        for (OptionProvider provider : optionProviders) {
+            value = provider.getOption(source, key);
+            if (value != null) break;
+        }
+        Optional<String> result = hasListeners(OPTION_LISTENERS) ? post(new OptionRequestEvent(source, key), value) : Optional.ofNullable(value);
+        PermissionMetrics.record(PermissionMetrics.Api.OPTION, start);
+        if (recorded != null) JfrEvents.commit(recorded, key, JfrEvents.sourceType(source), result.isPresent());
+        AuditLog.option(source, key, result.orElse(null));
+        return result;
+    }
+
+    public static Optional<String> getOption(Entity entity, String key) {
+        long start = PermissionMetrics.start();
+        JfrOptionRead recorded = JfrEvents.beginOptionRead();
+        String value = null;
+        for (OptionProvider provider : optionProviders) {
+            value = provider.getOption(entity, key);
+            if (value != null) break;
+        }
+        Optional<String> result = hasListeners(OPTION_LISTENERS) ? post(new OptionRequestEvent(entity, key), value) : Optional.ofNullable(value);
+        PermissionMetrics.record(PermissionMetrics.Api.OPTION, start);
+        if (recorded != null) JfrEvents.commit(recorded, key, JfrEvents.sourceType(entity), result.isPresent());
+        AuditLog.option(entity, key, result.orElse(null));
+        return result;
+    }
+
+    public static Map<String, String> getOptions(CommandSourceStack source, Collection<String> keys) {
+        long start = PermissionMetrics.start();
+        Set<String> remaining = new LinkedHashSet<>(keys);
+        Map<String, String> values = new HashMap<>();
+        for (OptionProvider provider : optionProviders) {
+            if (remaining.isEmpty()) break;
+            provider.getOptions(source, remaining).forEach((key, value) -> {
+                if (value != null && remaining.remove(key)) values.put(key, value);
+            });
+        }
+        if (hasListeners(OPTION_LISTENERS)) {
+            for (String key : new LinkedHashSet<>(keys)) {
+                post(new OptionRequestEvent(source, key), values.get(key)).ifPresentOrElse(value -> values.put(key, value), () -> values.remove(key));
+            }
+        }
+        PermissionMetrics.record(PermissionMetrics.Api.OPTION_BATCH, start);
+        if (AuditLog.isEnabled()) {
+            for (String key : keys) {
+                AuditLog.option(source, key, values.get(key));
+            }
+        }
+        return Collections.unmodifiableMap(values);
+    }
+
+    public static Map<String, String> getAllOptions(CommandSourceStack source) {
+        long start = PermissionMetrics.start();
+        OptionProvider[] providers = optionProviders;
+        Map<String, String> values = new HashMap<>();
+        for (int i = providers.length - 1; i >= 0; i--) {
+            providers[i].getAllOptions(source).forEach((key, value) -> {
+                if (value != null) values.put(key, value);
+            });
+        }
+        if (hasListeners(OPTION_LISTENERS)) {
+            for (String key : new ArrayList<>(values.keySet())) {
+                post(new OptionRequestEvent(source, key), values.get(key)).ifPresentOrElse(value -> values.put(key, value), () -> values.remove(key));
+            }
+        }
+        PermissionMetrics.record(PermissionMetrics.Api.OPTION_BATCH, start);
+        return Collections.unmodifiableMap(values);
+    }
+
+    private static Tristate post(PermissionCheckEvent event, Tristate state) {
+        event.setState(LuckPermsStates.toLuckPerms(state));
+        MinecraftForge.EVENT_BUS.post(event);
+        return LuckPermsStates.fromLuckPerms(event.getState());
+    }
+
+    private static Optional<String> post(OptionRequestEvent event, @Nullable String value) {
+        event.setValue(value);
+        MinecraftForge.EVENT_BUS.post(event);
+        return event.getValue();
+    }
+
+    static CompletableFuture<Tristate[]> allOf(CompletableFuture<Tristate>[] states) {
+        return CompletableFuture.allOf(states).thenApply(v -> {
+            Tristate[] resolved = new Tristate[states.length];
+            for (int i = 0; i < states.length; i++) {
+                resolved[i] = states[i].join();
+            }
+            return resolved;
+        });
+    }
+
+    private static CompletableFuture<Tristate[]> fillUndefined(OfflinePermissionProvider provider, UUID uuid, String[] permissions, Tristate[] resolved) {
+        int undefined = 0;
+        for (Tristate state : resolved) {
+            if (state == Tristate.UNDEFINED) undefined++;
+        }
+        if (undefined == 0) {
+            return CompletableFuture.completedFuture(resolved);
+        }
+        int[] indices = new int[undefined];
+        String[] remaining = new String[undefined];
+        for (int i = 0, j = 0; i < resolved.length; i++) {
+            if (resolved[i] == Tristate.UNDEFINED) {
+                indices[j] = i;
+                remaining[j++] = permissions[i];
+            }
+        }
+        return provider.getPermissionValues(uuid, remaining).thenApply(states -> {
+            Tristate[] merged = resolved.clone();
+            for (int i = 0; i < indices.length; i++) {
+                merged[indices[i]] = states[i];
+            }
+            return merged;
+        });
+    }
+
+    private static boolean hasListeners(ListenerList listeners) {
+        return BUS_ID < 0 || listeners.getListeners(BUS_ID).length > 0;
+    }
+
+    private static boolean hasPermissionListeners() {
+        return PermissionsMod.isLuckPermsLoaded() && hasListeners(CheckEvents.PERMISSION_LISTENERS);
+    }
+
+    private static boolean hasOfflinePermissionListeners() {
+        return PermissionsMod.isLuckPermsLoaded() && hasListeners(CheckEvents.OFFLINE_PERMISSION_LISTENERS);
+    }
+
+    private static <T> T[] prepend(T[] providers, T provider) {
+        T[] result = Arrays.copyOf(providers, providers.length + 1);
+        System.arraycopy(providers, 0, result, 1, providers.length);
+        result[0] = provider;
+        return result;
+    }
+
+    private static int findBusId() {
+        try {
+            Field busID = MinecraftForge.EVENT_BUS.getClass().getDeclaredField("busID");
+            busID.setAccessible(true);
+            return busID.getInt(MinecraftForge.EVENT_BUS);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            PermissionsMod.LOGGER.warn("Unable to resolve the Forge event bus id, permission events will always be posted", e);
+            return -1;
+        }
+    }
+
+    /**
+     * The listener lists of the check events, which carry LuckPerms' {@code Tristate}. Kept apart
+     * so that they are only looked up once LuckPerms is known to be loaded.
+     */
+    private static final class CheckEvents {
+        static final ListenerList PERMISSION_LISTENERS = EventListenerHelper.getListenerList(PermissionCheckEvent.class);
+        static final ListenerList OFFLINE_PERMISSION_LISTENERS = EventListenerHelper.getListenerList(OfflinePermissionCheckEvent.class);
+    }
+}
@@ -0,0 +1,82 @@
+package me.infamous.permissions;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * An immutable copy of a player's LuckPerms permissions and meta, safe to query from any thread.
+ *
+ * <p>A snapshot never changes. When LuckPerms recalculates the player, a new snapshot replaces
+ * this one for later calls to {@link me.lucko.fabric.api.permissions.v0.Permissions#snapshot(net.minecraft.server.level.ServerPlayer)},
+ * so long-lived holders should fetch a fresh snapshot rather than keep one around.</p>
+ *
+ * <p>Only LuckPerms, or the built-in permissions when it is not installed, is consulted; other
+ * registered providers and the check events are not.</p>
+ */
+public final class PermissionSnapshot {
+    private final UUID uuid;
+    private final Map<String, Boolean> permissions;
+    private final Map<String, String> options;
+
+    PermissionSnapshot(UUID uuid, Map<String, Boolean> permissions, Map<String, String> options) {
+        this.uuid = uuid;
+        this.permissions = Map.copyOf(permissions);
+        this.options = Map.copyOf(options);
+    }
+
+    public UUID getUniqueId() {
+        return this.uuid;
+    }
+
+    /**
+     * Gets the {@link Tristate state} of a permission, resolving wildcard nodes such as
+     * {@code mymod.*} the same way LuckPerms does by default.
+     *
+     * @param permission the permission
+     * @return the state of the permission
+     */
+    public Tristate getPermissionValue(String permission) {
+        Objects.requireNonNull(permission, "permission");
+        Boolean value = this.permissions.get(permission);
+        if (value != null) return Tristate.of(value);
+        for (int dot = permission.lastIndexOf('.'); dot > 0; dot = permission.lastIndexOf('.', dot - 1)) {
+            value = this.permissions.get(permission.substring(0, dot + 1) + '*');
+            if (value != null) return Tristate.of(value);
+        }
+        value = this.permissions.get("*");
+        return value != null ? Tristate.of(value) : Tristate.UNDEFINED;
+    }
+
+    public boolean check(String permission, boolean defaultValue) {
+        Tristate state = this.getPermissionValue(permission);
+        return state == Tristate.UNDEFINED ? defaultValue : state.asBoolean();
+    }
+
+    public boolean check(String permission) {
+        return this.check(permission, false);
+    }
+
+    public Optional<String> getOption(String key) {
+        return Optional.ofNullable(this.options.get(Objects.requireNonNull(key, "key")));
+    }
+
+    /**
+     * Gets every explicitly set permission, wildcards included as they were set.
+     *
+     * @return the permissions, keyed by node
+     */
+    public Map<String, Boolean> getPermissions() {
+        return this.permissions;
+    }
+
+    public Map<String, String> getOptions() {
+        return this.options;
+    }
+
+    @Override
+    public String toString() {
+        return "PermissionSnapshot{uuid=" + this.uuid + ", permissions=" + this.permissions.size() + ", options=" + this.options.size() + '}';
+    }
+}
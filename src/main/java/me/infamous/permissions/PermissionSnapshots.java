@@ -0,0 +1,85 @@
+package me.infamous.permissions;
+
+import net.luckperms.api.model.user.User;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the current {@link PermissionSnapshot} of each online player that has asked for one.
+ *
+ * <p>Snapshots are built from the user LuckPerms has loaded, which is safe off the server
+ * thread, and rebuilt whenever LuckPerms recalculates the user. Without LuckPerms they are
+ * built from the {@link LocalPermissions built-in engine} and dropped when it reloads.</p>
+ *
+ * <p>Snapshots are built and rebuilt while holding the entry, so a snapshot built from older
+ * data can never replace one built from newer data. Players that are not online get a fresh
+ * snapshot every time, as nothing would drop theirs.</p>
+ */
+final class PermissionSnapshots {
+    private final ConcurrentHashMap<UUID, PermissionSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<UUID> online = ConcurrentHashMap.newKeySet();
+
+    PermissionSnapshot get(UUID uuid) {
+        PermissionSnapshot snapshot = this.snapshots.get(uuid);
+        if (snapshot != null) return snapshot;
+        if (!this.online.contains(uuid)) {
+            snapshot = build(uuid);
+        } else {
+            // checked again under the entry, as remove() takes the same entry after logout
+            snapshot = this.snapshots.computeIfAbsent(uuid, k -> this.online.contains(k) ? build(k) : null);
+        }
+        // without a user, the player is looked up again once LuckPerms has loaded them
+        return snapshot != null ? snapshot : new PermissionSnapshot(uuid, Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    /**
+     * Rebuilds the snapshot of the given player from their current data, if there is one.
+     */
+    void refresh(UUID uuid) {
+        this.snapshots.computeIfPresent(uuid, (k, previous) -> build(k));
+    }
+
+    void login(UUID uuid) {
+        this.online.add(uuid);
+    }
+
+    void remove(UUID uuid) {
+        this.online.remove(uuid);
+        this.snapshots.remove(uuid);
+    }
+
+    void clear() {
+        this.snapshots.clear();
+    }
+
+    @Nullable
+    private static PermissionSnapshot build(UUID uuid) {
+        LocalPermissions local = PermissionsMod.localPermissions();
+        if (local != null) return build(uuid, local.subject(uuid));
+        User user = loadedUser(uuid);
+        return user == null ? null : build(user);
+    }
+
+    private static PermissionSnapshot build(User user) {
+        Map<String, String> options = LuckPermsPermissionProvider.getAllOptions(user.getCachedData().getMetaData());
+        return new PermissionSnapshot(user.getUniqueId(), user.getCachedData().getPermissionData().getPermissionMap(), options);
+    }
+
+    private static PermissionSnapshot build(UUID uuid, LocalPermissions.Subject subject) {
+        return new PermissionSnapshot(uuid, subject.getPermissions(), subject.getMeta());
+    }
+
+    @Nullable
+    private static User loadedUser(UUID uuid) {
+        try {
+            return PermissionsMod.getPerms().map(lp -> lp.getUserManager().getUser(uuid)).orElse(null);
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+}
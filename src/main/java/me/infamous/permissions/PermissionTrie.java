@@ -0,0 +1,192 @@
+package me.infamous.permissions;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The explicitly set nodes of a user, split into an immutable trie on {@code '.'} so that every
+ * node under a prefix can be found without visiting the nodes that don't match it, and single
+ * nodes can be resolved, wildcards included, without allocating.
+ *
+ * <p>Children are kept in sorted arrays and found by binary search over the segment's region
+ * of the queried node, so lookups never create substrings.</p>
+ */
+final class PermissionTrie {
+    private static final byte UNSET = 0;
+    private static final byte TRUE = 1;
+    private static final byte FALSE = 2;
+    private static final String WILDCARD = "*";
+
+    private final Node root;
+
+    PermissionTrie(Map<String, Boolean> permissions) {
+        Builder root = new Builder();
+        permissions.forEach((permission, value) -> {
+            if (value != null) root.insert(permission, value);
+        });
+        this.root = root.build();
+    }
+
+    /**
+     * Resolves the state of a node. An exact match wins, otherwise the most specific wildcard
+     * ({@code a.b.*}, then {@code a.*}, then {@code *}) applies.
+     *
+     * @param permission the node
+     * @return the state of the node
+     */
+    Tristate getValue(String permission) {
+        Node node = this.root;
+        byte result = this.root.wildcard;
+        int start = 0;
+        while (true) {
+            int dot = permission.indexOf('.', start);
+            int end = dot < 0 ? permission.length() : dot;
+            node = node.child(permission, start, end);
+            if (node == null) return decode(result);
+            if (dot < 0) return decode(node.value != UNSET ? node.value : result);
+            if (node.wildcard != UNSET) result = node.wildcard;
+            start = dot + 1;
+        }
+    }
+
+    /**
+     * Collects every node starting with the given prefix into {@code into}, along with the
+     * nearest wildcard above the prefix, such as {@code mod.*} or {@code *}, as that wildcard
+     * also decides every node under the prefix that is not set explicitly.
+     *
+     * <p>The prefix is matched as a string, so {@code "mod.craft."} matches the children of
+     * {@code mod.craft}, while {@code "mod.craft"} also matches {@code mod.craft} itself and
+     * siblings such as {@code mod.crafting}.</p>
+     *
+     * @param prefix the prefix
+     * @param into the map to put the matching nodes and their values into
+     */
+    void collect(String prefix, Map<String, Boolean> into) {
+        Node node = this.root;
+        Node inherited = this.root.wildcard != UNSET ? this.root : null;
+        int start = 0;
+        int dot;
+        while ((dot = prefix.indexOf('.', start)) >= 0) {
+            node = node.child(prefix, start, dot);
+            if (node == null) break;
+            if (node.wildcard != UNSET) inherited = node;
+            start = dot + 1;
+        }
+        if (inherited != null) into.put(this.wildcard(inherited), inherited.wildcard == TRUE);
+        if (node == null) return;
+        String partial = prefix.substring(start);
+        for (int i = 0; i < node.keys.length; i++) {
+            if (node.keys[i].startsWith(partial)) node.children[i].collect(into);
+        }
+    }
+
+    private String wildcard(Node node) {
+        return node == this.root ? WILDCARD : node.permission + "." + WILDCARD;
+    }
+
+    private static Tristate decode(byte value) {
+        switch (value) {
+            case TRUE: return Tristate.TRUE;
+            case FALSE: return Tristate.FALSE;
+            default: return Tristate.UNDEFINED;
+        }
+    }
+
+    /**
+     * Compares a segment with the region {@code [start, end)} of a node, in {@link String#compareTo(String)} order.
+     */
+    private static int compare(String segment, String node, int start, int end) {
+        int length = Math.min(segment.length(), end - start);
+        for (int i = 0; i < length; i++) {
+            int difference = segment.charAt(i) - node.charAt(start + i);
+            if (difference != 0) return difference;
+        }
+        return segment.length() - (end - start);
+    }
+
+    private static final class Node {
+        private static final String[] NO_KEYS = new String[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        private final String[] keys;
+        private final Node[] children;
+        @Nullable
+        private final String permission;
+        private final byte value;
+        private final byte wildcard;
+
+        private Node(String[] keys, Node[] children, @Nullable String permission, byte value, byte wildcard) {
+            this.keys = keys.length == 0 ? NO_KEYS : keys;
+            this.children = children.length == 0 ? NO_CHILDREN : children;
+            this.permission = permission;
+            this.value = value;
+            this.wildcard = wildcard;
+        }
+
+        @Nullable
+        private Node child(String node, int start, int end) {
+            int low = 0;
+            int high = this.keys.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int comparison = compare(this.keys[mid], node, start, end);
+                if (comparison < 0) {
+                    low = mid + 1;
+                } else if (comparison > 0) {
+                    high = mid - 1;
+                } else {
+                    return this.children[mid];
+                }
+            }
+            return null;
+        }
+
+        private void collect(Map<String, Boolean> into) {
+            if (this.value != UNSET) into.put(this.permission, this.value == TRUE);
+            if (this.wildcard != UNSET) into.put(this.permission + "." + WILDCARD, this.wildcard == TRUE);
+            for (Node child : this.children) {
+                child.collect(into);
+            }
+        }
+    }
+
+    private static final class Builder {
+        private final TreeMap<String, Builder> children = new TreeMap<>();
+        @Nullable
+        private String permission;
+        private byte value = UNSET;
+        private byte wildcard = UNSET;
+
+        private void insert(String permission, boolean value) {
+            Builder node = this;
+            int start = 0;
+            int dot;
+            while (true) {
+                dot = permission.indexOf('.', start);
+                String segment = dot < 0 ? permission.substring(start) : permission.substring(start, dot);
+                if (dot < 0 && segment.equals(WILDCARD)) {
+                    node.wildcard = value ? TRUE : FALSE;
+                    return;
+                }
+                String path = dot < 0 ? permission : permission.substring(0, dot);
+                node = node.children.computeIfAbsent(segment, k -> new Builder());
+                node.permission = path;
+                if (dot < 0) break;
+                start = dot + 1;
+            }
+            node.value = value ? TRUE : FALSE;
+        }
+
+        private Node build() {
+            String[] keys = new String[this.children.size()];
+            Node[] children = new Node[keys.length];
+            int i = 0;
+            for (Map.Entry<String, Builder> child : this.children.entrySet()) {
+                keys[i] = child.getKey();
+                children[i++] = child.getValue().build();
+            }
+            return new Node(keys, children, this.permission, this.value, this.wildcard);
+        }
+    }
+}
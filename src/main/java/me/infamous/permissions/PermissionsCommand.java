@@ -0,0 +1,97 @@
+package me.infamous.permissions;
+
+import com.mojang.brigadier.Command;
+import com.mojang.brigadier.CommandDispatcher;
+import me.lucko.fabric.api.permissions.v0.Permissions;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.commands.Commands;
+import net.minecraft.network.chat.Component;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The {@code /permissionsapi} command.
+ */
+final class PermissionsCommand {
+    private PermissionsCommand() {
+    }
+
+    static void register(CommandDispatcher<CommandSourceStack> dispatcher) {
+        dispatcher.register(Commands.literal("permissionsapi")
+                .requires(Permissions.require("permissionsapi.command", 3))
+                .then(Commands.literal("stats")
+                        .requires(Permissions.require("permissionsapi.command.stats", 3))
+                        .executes(context -> stats(context.getSource()))
+                        .then(Commands.literal("reset")
+                                .executes(context -> reset(context.getSource()))))
+                .then(Commands.literal("reload")
+                        .requires(Permissions.require("permissionsapi.command.reload", 3))
+                        .executes(context -> reload(context.getSource()))));
+    }
+
+    private static int stats(CommandSourceStack source) {
+        if (!PermissionMetrics.isEnabled()) {
+            source.sendFailure(Component.literal("Metrics are disabled in the permissions_api config"));
+            return 0;
+        }
+        MetricsSnapshot snapshot = PermissionMetrics.snapshot(PermissionsConfig.METRICS_TOP_NODES.get());
+        source.sendSuccess(Component.literal("Permissions API calls:"), false);
+        for (Map.Entry<PermissionMetrics.Api, MetricsSnapshot.Timer> api : snapshot.getApis().entrySet()) {
+            if (api.getValue().getCount() == 0) continue;
+            source.sendSuccess(Component.literal("  " + api.getKey().name().toLowerCase(Locale.ROOT) + ": " + format(api.getValue())), false);
+        }
+        source.sendSuccess(Component.literal(String.format(Locale.ROOT, "Caches: permissions %s (%d players), options %s, offline users %s (%d cached, %d evicted)",
+                percent(snapshot.getPermissionCacheHitRatio()), snapshot.getPlayersCached(),
+                percent(snapshot.getOptionCacheHitRatio()),
+                percent(snapshot.getOfflineUserHitRatio()), snapshot.getOfflineUsersCached(), snapshot.getOfflineUserEvictions())), false);
+        source.sendSuccess(Component.literal(String.format(Locale.ROOT, "Async: queue depth %d, avg wait %.3fms, max wait %.3fms",
+                snapshot.getAsyncQueueDepth(), snapshot.getAsyncAverageQueueLatencyMillis(), snapshot.getAsyncMaxQueueLatencyMillis())), false);
+        if (snapshot.getAuditRecorded() > 0 || snapshot.getAuditDropped() > 0) {
+            source.sendSuccess(Component.literal(String.format(Locale.ROOT, "Audit: %d recorded, %d written, %d dropped (buffer full), %d failed",
+                    snapshot.getAuditRecorded(), snapshot.getAuditWritten(), snapshot.getAuditDropped(), snapshot.getAuditFailed())), false);
+        }
+        if (!snapshot.getTopNodes().isEmpty()) {
+            source.sendSuccess(Component.literal("Most checked nodes:"), false);
+            for (MetricsSnapshot.Node node : snapshot.getTopNodes()) {
+                source.sendSuccess(Component.literal("  " + node.getPermission() + ": " + format(node.getTimer())), false);
+            }
+        }
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static int reset(CommandSourceStack source) {
+        PermissionMetrics.reset();
+        source.sendSuccess(Component.literal("Permissions API metrics reset"), true);
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static int reload(CommandSourceStack source) {
+        LocalPermissions local = PermissionsMod.localPermissions();
+        if (local == null) {
+            source.sendFailure(Component.literal("LuckPerms is installed, the built-in permissions are not used"));
+            return 0;
+        }
+        if (!PermissionsMod.reloadLocalPermissions()) {
+            source.sendFailure(Component.literal("Failed to load " + local.getPath() + ", see the server log"));
+            return 0;
+        }
+        source.sendSuccess(Component.literal("Reloaded the built-in permissions (" + local.size() + " users)"), true);
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static String format(MetricsSnapshot.Timer timer) {
+        return String.format(Locale.ROOT, "%d calls, avg %s, p99 <%s, max %s",
+                timer.getCount(), nanos(timer.getAverageNanos()), nanos(timer.getPercentileNanos(0.99)), nanos(timer.getMaxNanos()));
+    }
+
+    private static String nanos(double nanos) {
+        if (nanos < 1_000) return String.format(Locale.ROOT, "%.0fns", nanos);
+        if (nanos < 1_000_000) return String.format(Locale.ROOT, "%.1fus", nanos / 1_000);
+        return String.format(Locale.ROOT, "%.1fms", nanos / 1_000_000);
+    }
+
+    private static String percent(double ratio) {
+        return String.format(Locale.ROOT, "%.1f%%", ratio * 100);
+    }
+}
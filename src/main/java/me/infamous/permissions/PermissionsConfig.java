@@ -0,0 +1,148 @@
+package me.infamous.permissions;
+
+import net.minecraftforge.common.ForgeConfigSpec;
+
+import java.util.List;
+
+public final class PermissionsConfig {
+    public static final ForgeConfigSpec SPEC;
+    public static final ForgeConfigSpec.EnumValue<ExecutorType> ASYNC_EXECUTOR;
+    public static final ForgeConfigSpec.IntValue ASYNC_POOL_SIZE;
+    public static final ForgeConfigSpec.IntValue OFFLINE_BATCH_PARALLELISM;
+    public static final ForgeConfigSpec.IntValue OFFLINE_USERS_SIZE;
+    public static final ForgeConfigSpec.IntValue OFFLINE_USERS_EXPIRE;
+    public static final ForgeConfigSpec.IntValue MISSING_USERS_SIZE;
+    public static final ForgeConfigSpec.IntValue MISSING_USERS_EXPIRE;
+    public static final ForgeConfigSpec.IntValue NODE_IDS;
+    public static final ForgeConfigSpec.BooleanValue METRICS_ENABLED;
+    public static final ForgeConfigSpec.IntValue METRICS_TOP_NODES;
+    public static final ForgeConfigSpec.BooleanValue JFR_ENABLED;
+    public static final ForgeConfigSpec.IntValue JFR_SUMMARY_NODES;
+    public static final ForgeConfigSpec.BooleanValue AUDIT_ENABLED;
+    public static final ForgeConfigSpec.EnumValue<AuditDecisions> AUDIT_DECISIONS;
+    public static final ForgeConfigSpec.DoubleValue AUDIT_SAMPLE_RATE;
+    public static final ForgeConfigSpec.ConfigValue<List<? extends String>> AUDIT_SAMPLING_RULES;
+    public static final ForgeConfigSpec.IntValue AUDIT_BUFFER_SIZE;
+    public static final ForgeConfigSpec.IntValue AUDIT_FLUSH_INTERVAL;
+    public static final ForgeConfigSpec.IntValue AUDIT_MAX_FILE_SIZE;
+    public static final ForgeConfigSpec.IntValue AUDIT_MAX_FILES;
+    public static final ForgeConfigSpec.BooleanValue OFFLINE_CACHE_ENABLED;
+    public static final ForgeConfigSpec.IntValue OFFLINE_CACHE_ENTRIES;
+    public static final ForgeConfigSpec.IntValue OFFLINE_CACHE_TTL;
+    public static final ForgeConfigSpec.IntValue OFFLINE_CACHE_REFRESH_AFTER;
+
+    static {
+        ForgeConfigSpec.Builder builder = new ForgeConfigSpec.Builder();
+        builder.comment("Settings for the continuations of offline (asynchronous) permission checks").push("async");
+        ASYNC_EXECUTOR = builder
+                .comment("The executor that offline permission results are completed on.",
+                        "POOL: a dedicated, fixed-size pool of platform threads",
+                        "VIRTUAL: a virtual thread per task (Java 21+, falls back to POOL otherwise)",
+                        "DIRECT: the thread that resolved the permission, never hopping to another executor")
+                .defineEnum("executor", ExecutorType.POOL);
+        ASYNC_POOL_SIZE = builder
+                .comment("The number of threads in the POOL executor")
+                .defineInRange("poolSize", 2, 1, 64);
+        OFFLINE_BATCH_PARALLELISM = builder
+                .comment("The number of players an offline batch check loads from LuckPerms at once")
+                .defineInRange("batchParallelism", 16, 1, 256);
+        builder.pop();
+        builder.comment("Settings for the in-memory caches of LuckPerms users").push("users");
+        OFFLINE_USERS_SIZE = builder
+                .comment("The number of users loaded for offline checks that are kept")
+                .defineInRange("offlineUsers", 1000, 1, 100000);
+        OFFLINE_USERS_EXPIRE = builder
+                .comment("How long a user loaded for offline checks is kept, in minutes")
+                .defineInRange("offlineUsersExpireMinutes", 5, 1, 24 * 60);
+        MISSING_USERS_SIZE = builder
+                .comment("The number of players without a LuckPerms user (fake players, NPCs) that are remembered")
+                .defineInRange("missingUsers", 10000, 1, 1000000);
+        MISSING_USERS_EXPIRE = builder
+                .comment("How long a player without a LuckPerms user is remembered, in minutes")
+                .defineInRange("missingUsersExpireMinutes", 5, 1, 24 * 60);
+        NODE_IDS = builder
+                .comment("The number of distinct permission nodes checked by string that are cached by id for online players.",
+                        "Further nodes, such as ones built from player input, are cached in a small map per player and are not",
+                        "counted per node by /permissionsapi stats. Declared nodes, node handles and command nodes always get an id")
+                .defineInRange("nodeIds", 4096, 256, 1 << 20);
+        builder.pop();
+        builder.comment("Settings for the metrics shown by /permissionsapi stats").push("metrics");
+        METRICS_ENABLED = builder
+                .comment("Whether to count and time permission checks and option reads")
+                .define("enabled", true);
+        METRICS_TOP_NODES = builder
+                .comment("The number of most checked nodes shown by /permissionsapi stats")
+                .defineInRange("topNodes", 10, 0, 100);
+        builder.pop();
+        builder.comment("Settings for the Java Flight Recorder events of this mod.",
+                "Thresholds and the summary period are set per recording, with the threshold and period",
+                "settings of the permissions_api.* events").push("jfr");
+        JFR_ENABLED = builder
+                .comment("Whether to emit events while a recording is running")
+                .define("enabled", true);
+        JFR_SUMMARY_NODES = builder
+                .comment("The number of most checked nodes emitted by each permissions_api.NodeFrequency event period")
+                .defineInRange("summaryNodes", 20, 0, 1000);
+        builder.pop();
+        builder.comment("Settings for the audit log of permission decisions, written to logs/permissions_api-audit.log").push("audit");
+        AUDIT_ENABLED = builder
+                .comment("Whether to record permission decisions")
+                .define("enabled", false);
+        AUDIT_DECISIONS = builder
+                .comment("The decisions to record.",
+                        "DENIED: permission checks whose final outcome, after any default value or level, was false",
+                        "ALL: every permission check and its outcome, every permission lookup and every option read")
+                .defineEnum("decisions", AuditDecisions.DENIED);
+        AUDIT_SAMPLE_RATE = builder
+                .comment("The fraction of decisions recorded when no sampling rule matches")
+                .defineInRange("sampleRate", 1.0, 0.0, 1.0);
+        AUDIT_SAMPLING_RULES = builder
+                .comment("Sampling rates for specific players or nodes, as \"player:<uuid>=<rate>\" or \"node:<prefix>=<rate>\".",
+                        "A player rule wins over node rules, and the longest matching node prefix wins over shorter ones")
+                .defineList("samplingRules", List.of(), rule -> rule instanceof String);
+        AUDIT_BUFFER_SIZE = builder
+                .comment("The number of decisions buffered for the writer, rounded up to a power of two.",
+                        "Decisions made while the buffer is full are dropped and counted by /permissionsapi stats")
+                .defineInRange("bufferSize", 65536, 1024, 1 << 22);
+        AUDIT_FLUSH_INTERVAL = builder
+                .comment("How often the writer drains the buffer, in milliseconds")
+                .defineInRange("flushIntervalMillis", 250, 10, 10000);
+        AUDIT_MAX_FILE_SIZE = builder
+                .comment("The size in megabytes at which the audit log is rotated")
+                .defineInRange("maxFileSizeMb", 64, 1, 4096);
+        AUDIT_MAX_FILES = builder
+                .comment("The number of rotated audit logs kept")
+                .defineInRange("maxFiles", 10, 1, 1000);
+        builder.pop();
+        builder.comment("Settings for the on-disk cache of offline permission results, kept in permissions_api/offline-results.dat",
+                "so that offline checks made after a restart do not all load players from LuckPerms storage").push("offlineCache");
+        OFFLINE_CACHE_ENABLED = builder
+                .comment("Whether to keep offline results on disk")
+                .define("enabled", false);
+        OFFLINE_CACHE_ENTRIES = builder
+                .comment("The number of (player, node) results kept, rounded up to a power of two. Each takes 32 bytes on disk")
+                .defineInRange("entries", 262144, 1024, 1 << 24);
+        OFFLINE_CACHE_TTL = builder
+                .comment("How long a result is served for, in hours, unless LuckPerms recalculates the player first")
+                .defineInRange("ttlHours", 24, 1, 24 * 30);
+        OFFLINE_CACHE_REFRESH_AFTER = builder
+                .comment("How old a result may be, in minutes, before serving it also reloads it from LuckPerms in the background")
+                .defineInRange("refreshAfterMinutes", 10, 0, 24 * 60);
+        builder.pop();
+        SPEC = builder.build();
+    }
+
+    private PermissionsConfig() {
+    }
+
+    public enum ExecutorType {
+        POOL,
+        VIRTUAL,
+        DIRECT
+    }
+
+    public enum AuditDecisions {
+        DENIED,
+        ALL
+    }
+}
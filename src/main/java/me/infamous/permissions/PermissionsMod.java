@@ -1,83 +1,307 @@
 package me.infamous.permissions;
 
+import com.mojang.brigadier.context.CommandContextBuilder;
+import com.mojang.brigadier.context.ParsedCommandNode;
 import com.mojang.logging.LogUtils;
 import net.luckperms.api.LuckPerms;
 import net.luckperms.api.LuckPermsProvider;
 import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.player.Player;
 import net.minecraftforge.common.MinecraftForge;
-import net.minecraftforge.eventbus.api.EventPriority;
+import net.minecraftforge.event.CommandEvent;
+import net.minecraftforge.event.OnDatapackSyncEvent;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.entity.player.PermissionsChangedEvent;
+import net.minecraftforge.event.entity.player.PlayerEvent;
+import net.minecraftforge.event.server.ServerStartedEvent;
+import net.minecraftforge.event.server.ServerStoppedEvent;
+import net.minecraftforge.fml.ModList;
+import net.minecraftforge.fml.ModLoadingContext;
 import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.config.ModConfig;
+import net.minecraftforge.fml.event.config.ModConfigEvent;
+import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
 import net.minecraftforge.fml.loading.FMLEnvironment;
+import net.minecraftforge.fml.loading.FMLPaths;
+import net.minecraftforge.server.ServerLifecycleHooks;
 import org.slf4j.Logger;
 
-import java.util.HashSet;
+import javax.annotation.Nullable;
+import java.util.List;
 import java.util.Optional;
-import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Mod(PermissionsMod.MODID)
 public class PermissionsMod {
     public static final String MODID = "permissions_api";
     public static final Logger LOGGER = LogUtils.getLogger();
-    private static final Set<UUID> MISSING_CAPS = new HashSet<>();
+    private static final int OP_LEVEL_REBUILD_TICKS = 20 * 60;
+    private static final int CACHE_SWEEP_TICKS = 20 * 60;
+    private static final String LUCKPERMS = "luckperms";
+    static final PermissionSnapshots SNAPSHOTS = new PermissionSnapshots();
+    static final ChangeSubscriptions CHANGE_SUBSCRIPTIONS = new ChangeSubscriptions();
+    static final OnlineIndex ONLINE_INDEX = new OnlineIndex();
+    static final OpLevelIndex OP_LEVELS = new OpLevelIndex();
+    static final DeclaredNodes DECLARED_NODES = new DeclaredNodes();
+    static final MissingUsers MISSING_USERS = new MissingUsers(10000, 5, TimeUnit.MINUTES);
+    static final PermissionCache PERMISSION_CACHE = new PermissionCache();
+    static final OfflineUserCache OFFLINE_USERS = new OfflineUserCache(1000, 5, TimeUnit.MINUTES);
+    private static volatile boolean luckPermsLoaded = true;
+    @Nullable
+    private static volatile LocalPermissions localPermissions;
+    @Nullable
+    private static volatile OfflineResultStore offlineResults;
+    /**
+     * The LuckPerms provider, only created when LuckPerms is installed so that none of its
+     * classes are loaded otherwise.
+     */
+    @Nullable
+    private LuckPermsPermissionProvider luckPerms;
+    private int ticksSinceOpRebuild;
+    private int ticksSinceCacheSweep;
 
     public PermissionsMod() {
-        MinecraftForge.EVENT_BUS.addListener(EventPriority.HIGHEST, this::onPermissionCheck);
-        MinecraftForge.EVENT_BUS.addListener(EventPriority.HIGHEST, this::onOfflinePermissionCheck);
-        MinecraftForge.EVENT_BUS.addListener(EventPriority.HIGHEST, this::onOptionRequest);
-    }
-
-    private void onPermissionCheck(PermissionCheckEvent event) {
-        CommandSourceStack source = event.getSource();
-        if(source.isPlayer()){
-            ServerPlayer player = source.getPlayer();
-            UUID uuid = player.getUUID();
-            try{
-                PermissionsMod.getPerms()
-                        .map(lp -> lp.getPlayerAdapter(ServerPlayer.class).getUser(player))
-                        .map(user -> user.getCachedData().getPermissionData().checkPermission(event.getPermission()))
-                        .ifPresent(event::setState);
-            } catch (IllegalStateException e){
-                PermissionsMod.trackAndLogMissingCapability(uuid);
-            }
+        luckPermsLoaded = ModList.get().isLoaded(LUCKPERMS);
+        if(luckPermsLoaded) {
+            this.luckPerms = new LuckPermsPermissionProvider();
+            PermissionProviders.registerPermissionProvider(this.luckPerms);
+            PermissionProviders.registerOfflineProvider(this.luckPerms);
+            PermissionProviders.registerOptionProvider(this.luckPerms);
+        } else {
+            LocalPermissions local = new LocalPermissions(FMLPaths.CONFIGDIR.get().resolve(MODID + "-permissions.json"));
+            local.reload();
+            localPermissions = local;
+            LocalPermissionProvider provider = new LocalPermissionProvider(local);
+            PermissionProviders.registerPermissionProvider(provider);
+            PermissionProviders.registerOfflineProvider(provider);
+            PermissionProviders.registerOptionProvider(provider);
+            LOGGER.info("LuckPerms is not installed, using the built-in permissions from {}", local.getPath());
         }
+        JfrEvents.init();
+        ModLoadingContext.get().registerConfig(ModConfig.Type.COMMON, PermissionsConfig.SPEC);
+        FMLJavaModLoadingContext.get().getModEventBus().addListener(this::onConfigLoad);
+        MinecraftForge.EVENT_BUS.addListener(this::onServerStarted);
+        MinecraftForge.EVENT_BUS.addListener(this::onServerStopped);
+        MinecraftForge.EVENT_BUS.addListener(this::onPlayerLoggedIn);
+        MinecraftForge.EVENT_BUS.addListener(this::onPlayerLoggedOut);
+        MinecraftForge.EVENT_BUS.addListener(this::onDatapackSync);
+        MinecraftForge.EVENT_BUS.addListener(this::onRegisterCommands);
+        MinecraftForge.EVENT_BUS.addListener(this::onCommand);
+        MinecraftForge.EVENT_BUS.addListener(this::onPermissionsChanged);
+        MinecraftForge.EVENT_BUS.addListener(this::onServerTick);
+    }
+
+    private void onConfigLoad(ModConfigEvent event) {
+        if(event.getConfig().getSpec() != PermissionsConfig.SPEC) return;
+        PermissionExecutors.configure(PermissionsConfig.ASYNC_EXECUTOR.get(), PermissionsConfig.ASYNC_POOL_SIZE.get());
+        PermissionProviders.setOfflineBatchParallelism(PermissionsConfig.OFFLINE_BATCH_PARALLELISM.get());
+        OFFLINE_USERS.configure(PermissionsConfig.OFFLINE_USERS_SIZE.get(), PermissionsConfig.OFFLINE_USERS_EXPIRE.get(), TimeUnit.MINUTES);
+        MISSING_USERS.configure(PermissionsConfig.MISSING_USERS_SIZE.get(), PermissionsConfig.MISSING_USERS_EXPIRE.get(), TimeUnit.MINUTES);
+        NodeKeys.setLimit(PermissionsConfig.NODE_IDS.get());
+        PermissionMetrics.setEnabled(PermissionsConfig.METRICS_ENABLED.get());
+        JfrEvents.configure(PermissionsConfig.JFR_ENABLED.get(), PermissionsConfig.JFR_SUMMARY_NODES.get());
+        AuditLog.configure(PermissionsConfig.AUDIT_ENABLED.get(), PermissionsConfig.AUDIT_DECISIONS.get(),
+                PermissionsConfig.AUDIT_SAMPLE_RATE.get(), PermissionsConfig.AUDIT_SAMPLING_RULES.get(),
+                PermissionsConfig.AUDIT_BUFFER_SIZE.get(), PermissionsConfig.AUDIT_FLUSH_INTERVAL.get(),
+                PermissionsConfig.AUDIT_MAX_FILE_SIZE.get() * 1024L * 1024L, PermissionsConfig.AUDIT_MAX_FILES.get());
+        OfflineResultStore previous = offlineResults;
+        if(previous != null) previous.flush();
+        OfflineResultStore store = !PermissionsConfig.OFFLINE_CACHE_ENABLED.get() ? null : new OfflineResultStore(
+                FMLPaths.GAMEDIR.get().resolve(MODID).resolve("offline-results.dat"), PermissionsConfig.OFFLINE_CACHE_ENTRIES.get(),
+                TimeUnit.HOURS.toMinutes(PermissionsConfig.OFFLINE_CACHE_TTL.get()), PermissionsConfig.OFFLINE_CACHE_REFRESH_AFTER.get(), TimeUnit.MINUTES);
+        offlineResults = store;
+        // copied after the swap, so invalidations that still reach the previous store are kept too
+        if(store != null && previous != null) store.inherit(previous);
+    }
+
+    private void onRegisterCommands(RegisterCommandsEvent event) {
+        PermissionsCommand.register(event.getDispatcher());
     }
 
-    private void onOfflinePermissionCheck(OfflinePermissionCheckEvent event){
+    private void onServerStarted(ServerStartedEvent event) {
+        RequirementIndex.rebuild(event.getServer().getCommands().getDispatcher().getRoot());
+        DECLARED_NODES.reportNew(NodeKeys.keys());
+        OP_LEVELS.rebuild(event.getServer());
         try{
-            PermissionsMod.getPerms()
-                    .map(lp -> lp.getUserManager().loadUser(event.getUUID()))
-                    .map(userFuture -> userFuture.thenApplyAsync(user -> user.getCachedData().getPermissionData().checkPermission(event.getPermission())))
-                    .ifPresent(event::setState);
+            if(this.luckPerms != null) PermissionsMod.getPerms().ifPresent(this.luckPerms::subscribe);
         } catch (IllegalStateException e){
-            PermissionsMod.trackAndLogMissingCapability(event.getUUID());
+            LOGGER.warn("LuckPerms is not loaded, permission results will not be cached");
         }
     }
 
-    private void onOptionRequest(OptionRequestEvent event) {
-        CommandSourceStack source = event.getSource();
-        if(source.isPlayer()){
-            ServerPlayer player = source.getPlayer();
-            try{
-                PermissionsMod.getPerms()
-                        .map(lp -> lp.getPlayerAdapter(ServerPlayer.class).getUser(player))
-                        .map(user -> user.getCachedData().getMetaData().getMetaValue(event.getKey()))
-                        .ifPresent(event::setValue);
-            } catch (IllegalStateException e){
-                PermissionsMod.trackAndLogMissingCapability(player.getUUID());
+    private void onDatapackSync(OnDatapackSyncEvent event) {
+        // a null player means the datapacks were reloaded, which rebuilds the command tree
+        if(event.getPlayer() == null) {
+            RequirementIndex.rebuild(event.getPlayerList().getServer().getCommands().getDispatcher().getRoot());
+            if(localPermissions != null) PermissionsMod.reloadLocalPermissions();
+        }
+    }
+
+    private void onCommand(CommandEvent event) {
+        // follows redirects, so that "execute ... run op" is seen as well
+        for(CommandContextBuilder<CommandSourceStack> context = event.getParseResults().getContext(); context != null; context = context.getChild()) {
+            List<? extends ParsedCommandNode<CommandSourceStack>> nodes = context.getNodes();
+            if(nodes.isEmpty()) continue;
+            String command = nodes.get(0).getNode().getName();
+            // the command has not run yet, so the index is rebuilt at the end of the tick
+            if(command.equals("op") || command.equals("deop") || command.equals("reload")) {
+                OP_LEVELS.markDirty();
+                return;
             }
         }
     }
 
+    private void onPermissionsChanged(PermissionsChangedEvent event) {
+        OP_LEVELS.markDirty();
+    }
+
+    private void onServerTick(TickEvent.ServerTickEvent event) {
+        if(event.phase != TickEvent.Phase.END) return;
+        MinecraftServer server = ServerLifecycleHooks.getCurrentServer();
+        if(server == null) return;
+        if(OP_LEVELS.isDirty() || ++this.ticksSinceOpRebuild >= OP_LEVEL_REBUILD_TICKS) {
+            OP_LEVELS.rebuild(server);
+            this.ticksSinceOpRebuild = 0;
+        }
+        if(++this.ticksSinceCacheSweep >= CACHE_SWEEP_TICKS) {
+            PERMISSION_CACHE.retainOnline(server.getPlayerList());
+            DECLARED_NODES.reportNew(NodeKeys.keys());
+            this.ticksSinceCacheSweep = 0;
+        }
+        ONLINE_INDEX.refresh(server);
+        CHANGE_SUBSCRIPTIONS.deliver(server);
+    }
+
+    private void onServerStopped(ServerStoppedEvent event) {
+        if(this.luckPerms != null) this.luckPerms.unsubscribe();
+        PermissionsMod.invalidateAll();
+        OP_LEVELS.clear();
+        CHANGE_SUBSCRIPTIONS.clear();
+        ONLINE_INDEX.clear();
+        MISSING_USERS.clearReported();
+        AuditLog.flush();
+        OfflineResultStore store = offlineResults;
+        if(store != null) store.flush();
+    }
+
+    private void onPlayerLoggedIn(PlayerEvent.PlayerLoggedInEvent event) {
+        PermissionsMod.login(event.getEntity(), this.luckPerms);
+    }
+
+    private void onPlayerLoggedOut(PlayerEvent.PlayerLoggedOutEvent event) {
+        PermissionsMod.logout(event.getEntity().getUUID());
+    }
+
+    /**
+     * Sets up a player that just logged in: their declared nodes are warmed and they are added
+     * to the snapshots, change subscriptions and online index.
+     *
+     * @param luckPerms the LuckPerms provider to warm the declared nodes with, if installed
+     */
+    static void login(Player player, @Nullable LuckPermsPermissionProvider luckPerms) {
+        MISSING_USERS.remove(player.getUUID());
+        SNAPSHOTS.login(player.getUUID());
+        CHANGE_SUBSCRIPTIONS.markDirty(player.getUUID());
+        if(player instanceof ServerPlayer) {
+            ServerPlayer serverPlayer = (ServerPlayer) player;
+            if(luckPerms != null) luckPerms.warm(serverPlayer, DECLARED_NODES.nodes());
+            ONLINE_INDEX.login(serverPlayer);
+        }
+    }
+
+    /**
+     * Drops everything kept for a player that logged out.
+     */
+    static void logout(UUID uuid) {
+        PermissionsMod.invalidate(uuid);
+        SNAPSHOTS.remove(uuid);
+        CHANGE_SUBSCRIPTIONS.logout(uuid);
+        ONLINE_INDEX.logout(uuid);
+    }
+
+    static void invalidate(UUID uuid) {
+        OFFLINE_USERS.invalidate(uuid);
+        PermissionsMod.invalidateResolved(uuid);
+    }
+
+    /**
+     * Drops everything resolved from a player's data, but not the user loaded for offline checks.
+     */
+    static void invalidateResolved(UUID uuid) {
+        PERMISSION_CACHE.invalidate(uuid);
+        OfflineResultStore store = offlineResults;
+        if(store != null) store.invalidate(uuid);
+        MISSING_USERS.remove(uuid);
+        SNAPSHOTS.refresh(uuid);
+        CHANGE_SUBSCRIPTIONS.markDirty(uuid);
+        ONLINE_INDEX.markDirty(uuid);
+    }
+
+    static void invalidateAll() {
+        PERMISSION_CACHE.invalidateAll();
+        OFFLINE_USERS.invalidateAll();
+        MISSING_USERS.clear();
+        SNAPSHOTS.clear();
+    }
+
+    /**
+     * Reloads the {@link LocalPermissions built-in permissions} and drops everything resolved from the previous ones.
+     *
+     * @return {@code false} if LuckPerms is installed or the file could not be loaded
+     */
+    static boolean reloadLocalPermissions() {
+        LocalPermissions local = localPermissions;
+        if(local == null || !local.reload()) return false;
+        PermissionsMod.invalidateAll();
+        CHANGE_SUBSCRIPTIONS.markAllDirty();
+        ONLINE_INDEX.clear();
+        return true;
+    }
+
+    /**
+     * Gets the on-disk cache of offline results.
+     *
+     * @return the cache, or {@code null} if it is disabled
+     */
+    @Nullable
+    static OfflineResultStore offlineResults() {
+        return offlineResults;
+    }
+
+    /**
+     * Gets the built-in permissions engine.
+     *
+     * @return the engine, or {@code null} if LuckPerms is installed
+     */
+    @Nullable
+    static LocalPermissions localPermissions() {
+        return localPermissions;
+    }
+
+    /**
+     * Gets whether LuckPerms is installed, and with it the classes its API types need.
+     *
+     * @return whether LuckPerms is loaded
+     */
+    static boolean isLuckPermsLoaded() {
+        return luckPermsLoaded;
+    }
+
     public static Optional<LuckPerms> getPerms(){
+        if(!luckPermsLoaded) return Optional.empty();
         return Optional.ofNullable(FMLEnvironment.dist.isClient() ? null : LuckPermsProvider.get());
     }
 
     public static void trackAndLogMissingCapability(UUID uuid) {
-        if(!MISSING_CAPS.contains(uuid)){
-            MISSING_CAPS.add(uuid);
+        if(!MISSING_USERS.mark(uuid)) return;
+        if(MISSING_USERS.report(uuid)){
             LOGGER.error("LuckPerms UserCapability missing for {}", uuid);
+        } else {
+            LOGGER.debug("LuckPerms UserCapability still missing for {}", uuid);
         }
     }
 }
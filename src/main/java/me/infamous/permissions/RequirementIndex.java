@@ -0,0 +1,65 @@
+package me.infamous.permissions;
+
+import com.mojang.brigadier.tree.CommandNode;
+import me.lucko.fabric.api.permissions.v0.PermissionRequirement;
+import net.minecraft.commands.CommandSourceStack;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The distinct permission nodes guarding the server's command tree.
+ *
+ * <p>When the first of these is checked for a player after their cached results were
+ * dropped, all of them are resolved in one pass, so sending the command tree to that
+ * player is served from the cache.</p>
+ */
+final class RequirementIndex {
+    private static volatile RequirementIndex current = new RequirementIndex(new String[0], new BitSet());
+
+    private final String[] nodes;
+    private final BitSet ids;
+
+    private RequirementIndex(String[] nodes, BitSet ids) {
+        this.nodes = nodes;
+        this.ids = ids;
+    }
+
+    static RequirementIndex get() {
+        return current;
+    }
+
+    static void rebuild(CommandNode<CommandSourceStack> root) {
+        Set<String> nodes = new LinkedHashSet<>();
+        Set<CommandNode<CommandSourceStack>> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<CommandNode<CommandSourceStack>> pending = new ArrayDeque<>();
+        pending.add(root);
+        while (!pending.isEmpty()) {
+            CommandNode<CommandSourceStack> node = pending.poll();
+            if (!visited.add(node)) continue;
+            if (node.getRequirement() instanceof PermissionRequirement) {
+                nodes.add(((PermissionRequirement) node.getRequirement()).getNode().getPermission());
+            }
+            pending.addAll(node.getChildren());
+        }
+        BitSet ids = new BitSet();
+        for (String node : nodes) {
+            ids.set(NodeKeys.intern(node));
+        }
+        current = new RequirementIndex(nodes.toArray(new String[0]), ids);
+        PermissionsMod.LOGGER.debug("Indexed {} distinct permission nodes guarding commands", nodes.size());
+    }
+
+    boolean contains(int id) {
+        return id >= 0 && this.ids.get(id);
+    }
+
+    String[] nodes() {
+        return this.nodes;
+    }
+}
@@ -0,0 +1,51 @@
+package me.infamous.permissions;
+
+import javax.annotation.Nullable;
+
+/**
+ * The state of a permission: explicitly granted, explicitly denied, or not set.
+ *
+ * <p>This mirrors LuckPerms' {@code Tristate} so that the providers and the built-in permissions
+ * work without LuckPerms installed. The v0 API and the check events keep LuckPerms' type, and are
+ * converted with {@link LuckPermsStates}.</p>
+ */
+public enum Tristate {
+    TRUE(true),
+    FALSE(false),
+    UNDEFINED(false);
+
+    private final boolean booleanValue;
+
+    Tristate(boolean booleanValue) {
+        this.booleanValue = booleanValue;
+    }
+
+    /**
+     * Gets the state matching a boolean value.
+     *
+     * @param value the value
+     * @return {@link #TRUE} or {@link #FALSE}
+     */
+    public static Tristate of(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    /**
+     * Gets the state matching a boolean value that may not be set.
+     *
+     * @param value the value, or {@code null}
+     * @return {@link #TRUE} or {@link #FALSE}, or {@link #UNDEFINED} if the value is {@code null}
+     */
+    public static Tristate of(@Nullable Boolean value) {
+        return value == null ? UNDEFINED : of(value.booleanValue());
+    }
+
+    /**
+     * Gets the state as a boolean, where {@link #UNDEFINED} is {@code false}.
+     *
+     * @return whether the state is {@link #TRUE}
+     */
+    public boolean asBoolean() {
+        return this.booleanValue;
+    }
+}
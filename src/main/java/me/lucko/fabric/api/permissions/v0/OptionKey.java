@@ -0,0 +1,129 @@
+/*
+ * This file is part of fabric-permissions-api, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.fabric.api.permissions.v0;
+
+import me.infamous.permissions.OptionCache;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.server.level.ServerPlayer;
+import net.minecraft.world.entity.Entity;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * A typed handle to an option, whose parsed value is memoized per player.
+ *
+ * <p>Values for players are parsed once and then served from a cache until that player's
+ * LuckPerms data is recalculated. Other sources are resolved on every call.</p>
+ *
+ * <p>Each handle reserves a cache slot, so handles should be kept in constants:</p>
+ * <p><blockquote><pre>
+ *     static final OptionKey&lt;Integer&gt; MAX_HOMES = Options.intOption("homes.max", 3);
+ *
+ *     int maxHomes = MAX_HOMES.get(player);
+ * </pre></blockquote>
+ *
+ * @param <T> the type of the option value
+ * @see Options#option(String, Object, Function)
+ */
+public final class OptionKey<T> {
+    private static final Object ABSENT = new Object();
+
+    private final String key;
+    private final T defaultValue;
+    private final Function<String, ? extends T> valueTransformer;
+    private final int id = OptionCache.nextId();
+    private final Function<ServerPlayer, Object> loader = this::load;
+
+    OptionKey(String key, T defaultValue, Function<String, ? extends T> valueTransformer) {
+        this.key = Objects.requireNonNull(key, "key");
+        this.defaultValue = defaultValue;
+        this.valueTransformer = Objects.requireNonNull(valueTransformer, "valueTransformer");
+    }
+
+    /**
+     * Gets the option key.
+     *
+     * @return the key
+     */
+    public @NotNull String getKey() {
+        return this.key;
+    }
+
+    /**
+     * Gets the value used when the option is unset or cannot be parsed.
+     *
+     * @return the default value
+     */
+    public T getDefaultValue() {
+        return this.defaultValue;
+    }
+
+    /**
+     * Gets the parsed value of this option for the given source, falling back to the
+     * default value if nothing is returned or the value cannot be parsed.
+     *
+     * @param source the source
+     * @return the option value
+     */
+    public T get(@NotNull CommandSourceStack source) {
+        Objects.requireNonNull(source, "source");
+        ServerPlayer player = source.getPlayer();
+        if (player == null) return Options.get(source, this.key, this.defaultValue, this.valueTransformer);
+        return this.getCached(player);
+    }
+
+    /**
+     * Gets the parsed value of this option for the given entity, falling back to the
+     * default value if nothing is returned or the value cannot be parsed.
+     *
+     * @param entity the entity
+     * @return the option value
+     */
+    public T get(@NotNull Entity entity) {
+        Objects.requireNonNull(entity, "entity");
+        if (!(entity instanceof ServerPlayer)) return Options.get(entity, this.key, this.defaultValue, this.valueTransformer);
+        return this.getCached((ServerPlayer) entity);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T getCached(ServerPlayer player) {
+        Object value = OptionCache.get(player, this.id, this.loader);
+        return value == ABSENT ? this.defaultValue : (T) value;
+    }
+
+    private Object load(ServerPlayer player) {
+        Optional<T> value = Options.get(player, this.key, this.valueTransformer);
+        return value.isPresent() ? value.get() : ABSENT;
+    }
+
+    @Override
+    public String toString() {
+        return "OptionKey(" + this.key + ")";
+    }
+}
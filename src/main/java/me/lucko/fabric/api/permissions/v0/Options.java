@@ -25,16 +25,23 @@
 
 package me.lucko.fabric.api.permissions.v0;
 
-import me.infamous.permissions.OptionRequestEvent;
+import me.infamous.permissions.ChangeSubscription;
+import me.infamous.permissions.PermissionProviders;
 import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.Entity;
-import net.minecraftforge.common.MinecraftForge;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 /**
  * A simple options (metadata) API.
@@ -51,9 +58,7 @@ public interface Options {
     static @NotNull Optional<String> get(@NotNull CommandSourceStack source, @NotNull String key) {
         Objects.requireNonNull(source, "source");
         Objects.requireNonNull(key, "key");
-        OptionRequestEvent event = new OptionRequestEvent(source, key);
-        MinecraftForge.EVENT_BUS.post(event);
-        return event.getValue();
+        return PermissionProviders.getOption(source, key);
     }
 
     /**
@@ -127,6 +132,33 @@ public interface Options {
         return Options.<T>get(source, key, valueTransformer).orElse(defaultValue);
     }
 
+    /**
+     * Gets the values of several options for the given source at once.
+     *
+     * <p>The source is resolved once for all keys. Keys that nothing is returned for
+     * are absent from the returned map.</p>
+     *
+     * @param source the source
+     * @param keys the option keys
+     * @return an immutable map of option values, keyed by option key
+     */
+    static @NotNull Map<String, String> getAll(@NotNull CommandSourceStack source, @NotNull Collection<String> keys) {
+        Objects.requireNonNull(source, "source");
+        Objects.requireNonNull(keys, "keys");
+        return PermissionProviders.getOptions(source, keys);
+    }
+
+    /**
+     * Gets every option known for the given source at once.
+     *
+     * @param source the source
+     * @return an immutable map of option values, keyed by option key
+     */
+    static @NotNull Map<String, String> snapshot(@NotNull CommandSourceStack source) {
+        Objects.requireNonNull(source, "source");
+        return PermissionProviders.getAllOptions(source);
+    }
+
     /**
      * Gets the value of an option for the given entity.
      *
@@ -136,7 +168,8 @@ public interface Options {
      */
     static @NotNull Optional<String> get(@NotNull Entity entity, @NotNull String key) {
         Objects.requireNonNull(entity, "entity");
-        return get(entity.createCommandSourceStack(), key);
+        Objects.requireNonNull(key, "key");
+        return PermissionProviders.getOption(entity, key);
     }
 
     /**
@@ -150,8 +183,7 @@ public interface Options {
      */
     @Contract("_, _, !null -> !null")
     static String get(@NotNull Entity entity, @NotNull String key, String defaultValue) {
-        Objects.requireNonNull(entity, "entity");
-        return get(entity.createCommandSourceStack(), key, defaultValue);
+        return get(entity, key).orElse(defaultValue);
     }
 
     /**
@@ -175,8 +207,13 @@ public interface Options {
      * @return the transformed option value
      */
     static <T> @NotNull Optional<T> get(@NotNull Entity entity, @NotNull String key, @NotNull Function<String, ? extends T> valueTransformer) {
-        Objects.requireNonNull(entity, "entity");
-        return get(entity.createCommandSourceStack(), key, valueTransformer);
+        return get(entity, key).flatMap(value -> {
+            try {
+                return Optional.ofNullable(valueTransformer.apply(value));
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+        });
     }
 
     /**
@@ -203,8 +240,143 @@ public interface Options {
      */
     @Contract("_, _, !null, _ -> !null")
     static <T> T get(@NotNull Entity entity, @NotNull String key, T defaultValue, @NotNull Function<String, ? extends T> valueTransformer) {
-        Objects.requireNonNull(entity, "entity");
-        return get(entity.createCommandSourceStack(), key, defaultValue, valueTransformer);
+        return Options.<T>get(entity, key, valueTransformer).orElse(defaultValue);
+    }
+
+    /**
+     * Subscribes to changes of an option for the given player, instead of polling it.
+     *
+     * <p>The value is evaluated once whenever LuckPerms recalculates the player, coalesced to
+     * the end of the server tick, and {@code listener} is called on the server thread only if
+     * the value differs from the previous one. The value at the time of subscribing is the
+     * baseline and is not passed to the listener.</p>
+     *
+     * @param player the player, must be called on the server thread
+     * @param key the option key
+     * @param listener the listener
+     * @return the subscription, which should be closed once the changes are no longer needed
+     */
+    static @NotNull ChangeSubscription subscribe(@NotNull ServerPlayer player, @NotNull String key, @NotNull Consumer<Optional<String>> listener) {
+        Objects.requireNonNull(player, "player");
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(listener, "listener");
+        return PermissionProviders.subscribeOption(player.getUUID(), key, listener, player);
+    }
+
+    /**
+     * Subscribes to changes of an option for a player, instead of polling it.
+     *
+     * <p>Options can only be resolved for online players, so the baseline is taken once the
+     * player is online, and changes made while they were offline are noticed when they log in.</p>
+     *
+     * @param uuid the player uuid
+     * @param key the option key
+     * @param listener the listener, called on the server thread
+     * @return the subscription, which should be closed once the changes are no longer needed
+     * @see #subscribe(ServerPlayer, String, Consumer)
+     */
+    static @NotNull ChangeSubscription subscribe(@NotNull UUID uuid, @NotNull String key, @NotNull Consumer<Optional<String>> listener) {
+        Objects.requireNonNull(uuid, "uuid");
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(listener, "listener");
+        return PermissionProviders.subscribeOption(uuid, key, listener, null);
+    }
+
+    /**
+     * Gets the online players whose value of the given option matches {@code predicate}, without
+     * checking every online player.
+     *
+     * <p>The first lookup of a key resolves it for every online player; from then on the players
+     * are kept grouped by value as they log in and out and as LuckPerms recalculates them, so
+     * {@code predicate} is only tested once per distinct value. Players without the option are
+     * never included.</p>
+     *
+     * @param key the option key, which should be fixed as every one looked up stays indexed
+     * @param predicate the predicate
+     * @return the players, must be called on the server thread
+     */
+    static @NotNull List<ServerPlayer> onlineWhere(@NotNull String key, @NotNull Predicate<String> predicate) {
+        Objects.requireNonNull(key, "key");
+        Objects.requireNonNull(predicate, "predicate");
+        return PermissionProviders.getOnlineWhere(key, predicate);
     }
-    
+
+    /**
+     * Creates a typed option handle, whose value is parsed with the given {@code valueTransformer}
+     * and memoized per player.
+     *
+     * <p>The transformer is allowed to throw {@link IllegalArgumentException} or return null. This
+     * will result in the {@code defaultValue} being returned.</p>
+     *
+     * @param key the option key
+     * @param defaultValue the default value
+     * @param valueTransformer the transformer used to transform the value
+     * @param <T> the type of the transformed result
+     * @return the option handle
+     * @see OptionKey
+     */
+    static <T> @NotNull OptionKey<T> option(@NotNull String key, T defaultValue, @NotNull Function<String, ? extends T> valueTransformer) {
+        return new OptionKey<>(key, defaultValue, valueTransformer);
+    }
+
+    /**
+     * Creates a typed option handle for a string value.
+     *
+     * @param key the option key
+     * @param defaultValue the default value
+     * @return the option handle
+     */
+    static @NotNull OptionKey<String> stringOption(@NotNull String key, String defaultValue) {
+        return option(key, defaultValue, Function.identity());
+    }
+
+    /**
+     * Creates a typed option handle for an integer value.
+     *
+     * @param key the option key
+     * @param defaultValue the default value
+     * @return the option handle
+     */
+    static @NotNull OptionKey<Integer> intOption(@NotNull String key, int defaultValue) {
+        return option(key, defaultValue, Integer::parseInt);
+    }
+
+    /**
+     * Creates a typed option handle for a long value.
+     *
+     * @param key the option key
+     * @param defaultValue the default value
+     * @return the option handle
+     */
+    static @NotNull OptionKey<Long> longOption(@NotNull String key, long defaultValue) {
+        return option(key, defaultValue, Long::parseLong);
+    }
+
+    /**
+     * Creates a typed option handle for a double value.
+     *
+     * @param key the option key
+     * @param defaultValue the default value
+     * @return the option handle
+     */
+    static @NotNull OptionKey<Double> doubleOption(@NotNull String key, double defaultValue) {
+        return option(key, defaultValue, Double::parseDouble);
+    }
+
+    /**
+     * Creates a typed option handle for a boolean value. Only {@code true} and {@code false}
+     * (ignoring case) are accepted, anything else results in the {@code defaultValue}.
+     *
+     * @param key the option key
+     * @param defaultValue the default value
+     * @return the option handle
+     */
+    static @NotNull OptionKey<Boolean> booleanOption(@NotNull String key, boolean defaultValue) {
+        return option(key, defaultValue, value -> {
+            if (value.equalsIgnoreCase("true")) return Boolean.TRUE;
+            if (value.equalsIgnoreCase("false")) return Boolean.FALSE;
+            return null;
+        });
+    }
+
 }
@@ -0,0 +1,218 @@
+/*
+ * This file is part of fabric-permissions-api, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.fabric.api.permissions.v0;
+
+import me.infamous.permissions.LuckPermsStates;
+import me.infamous.permissions.NodeKeys;
+import me.infamous.permissions.PermissionProviders;
+import net.luckperms.api.util.Tristate;
+import net.minecraft.commands.CommandSourceStack;
+import net.minecraft.world.entity.Entity;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Objects;
+
+/**
+ * An immutable, precompiled handle to a permission node.
+ *
+ * <p>The node is validated and interned once when the handle is created, so callers
+ * checking the same node repeatedly should keep the handle in a constant.</p>
+ *
+ * <p>For example:</p>
+ * <p><blockquote><pre>
+ *     static final PermissionNode FLY = Permissions.node("mymod.fly", 2);
+ *
+ *     if (FLY.check(source)) { ... }
+ * </pre></blockquote>
+ *
+ * @see Permissions#node(String)
+ */
+public final class PermissionNode {
+    static final int NO_REQUIRED_LEVEL = -1;
+
+    private final String permission;
+    private final int id;
+    private final boolean defaultValue;
+    private final boolean hasDefaultRequiredLevel;
+    private final int defaultRequiredLevel;
+    private final PermissionRequirement requirement = new PermissionRequirement(this);
+
+    PermissionNode(String permission, boolean defaultValue, boolean validate) {
+        this(permission, defaultValue, false, NO_REQUIRED_LEVEL, validate);
+    }
+
+    PermissionNode(String permission, int defaultRequiredLevel, boolean validate) {
+        this(permission, false, true, defaultRequiredLevel, validate);
+    }
+
+    private PermissionNode(String permission, boolean defaultValue, boolean hasDefaultRequiredLevel, int defaultRequiredLevel, boolean validate) {
+        this.id = NodeKeys.intern(validate ? NodeKeys.validate(permission) : Objects.requireNonNull(permission, "permission"));
+        this.permission = NodeKeys.key(this.id);
+        this.defaultValue = defaultValue;
+        this.hasDefaultRequiredLevel = hasDefaultRequiredLevel;
+        this.defaultRequiredLevel = defaultRequiredLevel;
+    }
+
+    /**
+     * Gets the permission node string.
+     *
+     * @return the permission
+     */
+    public @NotNull String getPermission() {
+        return this.permission;
+    }
+
+    /**
+     * Gets the dense id of this node, shared by every handle with the same permission.
+     *
+     * @return the node id
+     */
+    public int getId() {
+        return this.id;
+    }
+
+    /**
+     * Gets the value used when the resultant state is {@link Tristate#UNDEFINED} and
+     * no {@link #getDefaultRequiredLevel() default required level} is set.
+     *
+     * @return the default value
+     */
+    public boolean getDefaultValue() {
+        return this.defaultValue;
+    }
+
+    /**
+     * Gets whether a permission level is required when the resultant state is
+     * {@link Tristate#UNDEFINED}, rather than the {@link #getDefaultValue() default value} being used.
+     *
+     * @return whether there is a default required level
+     */
+    public boolean hasDefaultRequiredLevel() {
+        return this.hasDefaultRequiredLevel;
+    }
+
+    /**
+     * Gets the permission level required when the resultant state is {@link Tristate#UNDEFINED},
+     * or {@code -1} if the {@link #getDefaultValue() default value} is used instead.
+     *
+     * <p>Handles created with {@link Permissions#require(String, int)} keep the level they were
+     * given even if it is negative, so use {@link #hasDefaultRequiredLevel()} to tell the two apart.</p>
+     *
+     * @return the default required level
+     */
+    public int getDefaultRequiredLevel() {
+        return this.defaultRequiredLevel;
+    }
+
+    /**
+     * Gets the {@link Tristate state} of this node for the given source.
+     *
+     * @param source the source
+     * @return the state of the permission
+     */
+    public @NotNull Tristate getValue(@NotNull CommandSourceStack source) {
+        Objects.requireNonNull(source, "source");
+        return LuckPermsStates.toLuckPerms(PermissionProviders.getPermissionValue(source, this.id, this.permission));
+    }
+
+    /**
+     * Gets the {@link Tristate state} of this node for the given entity.
+     *
+     * @param entity the entity
+     * @return the state of the permission
+     */
+    public @NotNull Tristate getValue(@NotNull Entity entity) {
+        Objects.requireNonNull(entity, "entity");
+        return LuckPermsStates.toLuckPerms(PermissionProviders.getPermissionValue(entity, this.id, this.permission));
+    }
+
+    /**
+     * Performs a permission check, falling back to this node's default if the resultant
+     * state is {@link Tristate#UNDEFINED}.
+     *
+     * @param source the source to perform the check for
+     * @return the result of the permission check
+     */
+    public boolean check(@NotNull CommandSourceStack source) {
+        Objects.requireNonNull(source, "source");
+        me.infamous.permissions.Tristate permissionValue = PermissionProviders.getPermissionValue(source, this.id, this.permission);
+        boolean result;
+        if(permissionValue != me.infamous.permissions.Tristate.UNDEFINED) result = permissionValue.asBoolean();
+        else if(this.hasDefaultRequiredLevel) result = source.hasPermission(this.defaultRequiredLevel);
+        else result = this.defaultValue;
+        return PermissionProviders.decided(source, this.permission, result);
+    }
+
+    /**
+     * Performs a permission check, falling back to this node's default if the resultant
+     * state is {@link Tristate#UNDEFINED}.
+     *
+     * @param entity the entity to perform the check for
+     * @return the result of the permission check
+     */
+    public boolean check(@NotNull Entity entity) {
+        Objects.requireNonNull(entity, "entity");
+        me.infamous.permissions.Tristate permissionValue = PermissionProviders.getPermissionValue(entity, this.id, this.permission);
+        boolean result;
+        if(permissionValue != me.infamous.permissions.Tristate.UNDEFINED) result = permissionValue.asBoolean();
+        else if(this.hasDefaultRequiredLevel) result = PermissionProviders.hasPermissionLevel(entity, this.defaultRequiredLevel);
+        else result = this.defaultValue;
+        return PermissionProviders.decided(entity, this.permission, result);
+    }
+
+    /**
+     * Gets a predicate which returns the result of {@link #check(CommandSourceStack)}.
+     *
+     * <p>The same predicate instance is returned on every call. It is a
+     * {@link PermissionRequirement}, so it can be recognised when attached to a command node.</p>
+     *
+     * @return a predicate that will perform the permission check
+     */
+    public @NotNull PermissionRequirement asPredicate() {
+        return this.requirement;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof PermissionNode)) return false;
+        PermissionNode other = (PermissionNode) o;
+        return this.id == other.id && this.defaultValue == other.defaultValue
+                && this.hasDefaultRequiredLevel == other.hasDefaultRequiredLevel && this.defaultRequiredLevel == other.defaultRequiredLevel;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 31 * this.id + Boolean.hashCode(this.defaultValue);
+        hash = 31 * hash + Boolean.hashCode(this.hasDefaultRequiredLevel);
+        return 31 * hash + this.defaultRequiredLevel;
+    }
+
+    @Override
+    public String toString() {
+        return "PermissionNode(" + this.permission + ")";
+    }
+}
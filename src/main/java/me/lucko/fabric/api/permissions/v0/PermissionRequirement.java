@@ -0,0 +1,65 @@
+/*
+ * This file is part of fabric-permissions-api, licensed under the MIT License.
+ *
+ *  Copyright (c) lucko (Luck) <luck@lucko.me>
+ *  Copyright (c) contributors
+ *
+ *  Permission is hereby granted, free of charge, to any person obtaining a copy
+ *  of this software and associated documentation files (the "Software"), to deal
+ *  in the Software without restriction, including without limitation the rights
+ *  to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *  copies of the Software, and to permit persons to whom the Software is
+ *  furnished to do so, subject to the following conditions:
+ *
+ *  The above copyright notice and this permission notice shall be included in all
+ *  copies or substantial portions of the Software.
+ *
+ *  THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *  IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *  FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *  AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *  LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *  OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ *  SOFTWARE.
+ */
+
+package me.lucko.fabric.api.permissions.v0;
+
+import net.minecraft.commands.CommandSourceStack;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Predicate;
+
+/**
+ * A command requirement backed by a {@link PermissionNode}.
+ *
+ * <p>Predicates created by {@link Permissions#require(String)} and {@link PermissionNode#asPredicate()}
+ * are instances of this class, so the permission nodes guarding a command tree can be
+ * discovered and evaluated together when the tree is sent to a player.</p>
+ */
+public final class PermissionRequirement implements Predicate<CommandSourceStack> {
+    private final PermissionNode node;
+
+    PermissionRequirement(PermissionNode node) {
+        this.node = node;
+    }
+
+    /**
+     * Gets the node this requirement checks.
+     *
+     * @return the node
+     */
+    public @NotNull PermissionNode getNode() {
+        return this.node;
+    }
+
+    @Override
+    public boolean test(CommandSourceStack source) {
+        return this.node.check(source);
+    }
+
+    @Override
+    public String toString() {
+        return "PermissionRequirement(" + this.node.getPermission() + ")";
+    }
+}
@@ -26,23 +26,36 @@
 package me.lucko.fabric.api.permissions.v0;
 
 import com.mojang.authlib.GameProfile;
-import me.infamous.permissions.OfflinePermissionCheckEvent;
-import me.infamous.permissions.PermissionCheckEvent;
+import me.infamous.permissions.ChangeSubscription;
+import me.infamous.permissions.LuckPermsStates;
+import me.infamous.permissions.PermissionExecutors;
+import me.infamous.permissions.PermissionProviders;
+import me.infamous.permissions.PermissionSnapshot;
 import net.luckperms.api.util.Tristate;
 import net.minecraft.commands.CommandSourceStack;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.level.ServerPlayer;
 import net.minecraft.world.entity.Entity;
-import net.minecraftforge.common.MinecraftForge;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 /**
  * A simple permissions API.
+ *
+ * <p>States are LuckPerms' {@link Tristate}, so the methods and {@link ChangeSubscription subscriptions}
+ * that return or pass one need the LuckPerms API. The boolean checks, predicates and node handles
+ * also work without LuckPerms installed, answered by the built-in permissions.</p>
  */
 public interface Permissions {
 
@@ -54,11 +67,7 @@ public interface Permissions {
      * @return the state of the permission
      */
     static @NotNull Tristate getPermissionValue(@NotNull CommandSourceStack source, @NotNull String permission) {
-        Objects.requireNonNull(source, "source");
-        Objects.requireNonNull(permission, "permission");
-        PermissionCheckEvent event = new PermissionCheckEvent(source, permission);
-        MinecraftForge.EVENT_BUS.post(event);
-        return event.getState();
+        return LuckPermsStates.toLuckPerms(resolve(source, permission));
     }
 
     /**
@@ -71,9 +80,9 @@ public interface Permissions {
      * @return the result of the permission check
      */
     static boolean check(@NotNull CommandSourceStack source, @NotNull String permission, boolean defaultValue) {
-        Tristate permissionValue = getPermissionValue(source, permission);
-        if(permissionValue == Tristate.UNDEFINED) return defaultValue;
-        return permissionValue.asBoolean();
+        me.infamous.permissions.Tristate permissionValue = resolve(source, permission);
+        if(permissionValue == me.infamous.permissions.Tristate.UNDEFINED) return PermissionProviders.decided(source, permission, defaultValue);
+        return PermissionProviders.decided(source, permission, permissionValue.asBoolean());
     }
 
     /**
@@ -86,9 +95,9 @@ public interface Permissions {
      * @return the result of the permission check
      */
     static boolean check(@NotNull CommandSourceStack source, @NotNull String permission, int defaultRequiredLevel) {
-        Tristate permissionValue = getPermissionValue(source, permission);
-        if(permissionValue == Tristate.UNDEFINED) return source.hasPermission(defaultRequiredLevel);
-        return permissionValue.asBoolean();
+        me.infamous.permissions.Tristate permissionValue = resolve(source, permission);
+        if(permissionValue == me.infamous.permissions.Tristate.UNDEFINED) return PermissionProviders.decided(source, permission, source.hasPermission(defaultRequiredLevel));
+        return PermissionProviders.decided(source, permission, permissionValue.asBoolean());
     }
 
     /**
@@ -100,7 +109,189 @@ public interface Permissions {
      * @return the result of the permission check
      */
     static boolean check(@NotNull CommandSourceStack source, @NotNull String permission) {
-        return getPermissionValue(source, permission).asBoolean();
+        return PermissionProviders.decided(source, permission, resolve(source, permission).asBoolean());
+    }
+
+    /**
+     * Gets the {@link Tristate states} of several permissions for the given source at once.
+     *
+     * <p>The source is resolved once for all permissions.</p>
+     *
+     * @param source the source
+     * @param permissions the permissions
+     * @return the states of the permissions, in the same order as {@code permissions}
+     */
+    static @NotNull Tristate[] getPermissionValues(@NotNull CommandSourceStack source, @NotNull String... permissions) {
+        return LuckPermsStates.toLuckPerms(resolve(source, permissions));
+    }
+
+    /**
+     * Checks whether the given source has any of the given permissions, treating
+     * {@link Tristate#UNDEFINED} as {@code false}.
+     *
+     * @param source the source to perform the checks for
+     * @param permissions the permissions to check
+     * @return whether any of the permission checks passed
+     */
+    static boolean checkAny(@NotNull CommandSourceStack source, @NotNull String... permissions) {
+        me.infamous.permissions.Tristate[] states = resolve(source, permissions);
+        for (int i = 0; i < states.length; i++) {
+            if(states[i].asBoolean()) return PermissionProviders.decided(source, permissions[i], true);
+        }
+        for (String permission : permissions) {
+            PermissionProviders.decided(source, permission, false);
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether the given source has all of the given permissions, treating
+     * {@link Tristate#UNDEFINED} as {@code false}.
+     *
+     * @param source the source to perform the checks for
+     * @param permissions the permissions to check
+     * @return whether all of the permission checks passed
+     */
+    static boolean checkAll(@NotNull CommandSourceStack source, @NotNull String... permissions) {
+        me.infamous.permissions.Tristate[] states = resolve(source, permissions);
+        for (int i = 0; i < states.length; i++) {
+            if(!PermissionProviders.decided(source, permissions[i], states[i].asBoolean())) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks up to 64 permissions at once, returning a mask with bit {@code i} set if the
+     * check for {@code permissions[i]} passed, treating {@link Tristate#UNDEFINED} as {@code false}.
+     *
+     * <p>For example, to compute a capability set for a UI:</p>
+     * <p><blockquote><pre>
+     *     long mask = checkMask(source, "mymod.edit", "mymod.delete");
+     *     boolean canDelete = (mask &amp; (1L &lt;&lt; 1)) != 0;
+     * </pre></blockquote>
+     *
+     * @param source the source to perform the checks for
+     * @param permissions the permissions to check
+     * @return the mask of passed checks
+     * @throws IllegalArgumentException if more than 64 permissions are given
+     */
+    static long checkMask(@NotNull CommandSourceStack source, @NotNull String... permissions) {
+        if (permissions.length > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " permissions can be checked in a mask");
+        }
+        me.infamous.permissions.Tristate[] states = resolve(source, permissions);
+        long mask = 0;
+        for (int i = 0; i < states.length; i++) {
+            if(PermissionProviders.decided(source, permissions[i], states[i].asBoolean())) mask |= 1L << i;
+        }
+        return mask;
+    }
+
+    /**
+     * Gets every permission explicitly set for the given source that starts with {@code prefix},
+     * in a single lookup rather than a check per candidate node.
+     *
+     * <p>The prefix is matched as a plain string, so {@code "mymod.craft."} returns the nodes
+     * below {@code mymod.craft}. Denied nodes are included with a value of {@code false}, and
+     * wildcard nodes such as {@code mymod.craft.*} are returned as they were set, not expanded.
+     * The nearest wildcard above the prefix, such as {@code mymod.*} or {@code *}, is included
+     * too, as it applies to every node under the prefix that is not set explicitly.</p>
+     * <p><blockquote><pre>
+     *     Permissions.granted(source, "mymod.craft.").forEach((node, value) -&gt; {
+     *         if (value) allowed.add(node.substring("mymod.craft.".length()));
+     *     });
+     * </pre></blockquote>
+     *
+     * @param source the source
+     * @param prefix the prefix
+     * @return the values of the matching permissions, keyed by permission
+     */
+    static @NotNull Map<String, Boolean> granted(@NotNull CommandSourceStack source, @NotNull String prefix) {
+        Objects.requireNonNull(source, "source");
+        Objects.requireNonNull(prefix, "prefix");
+        return PermissionProviders.getPermissionsByPrefix(source, prefix);
+    }
+
+    /**
+     * Subscribes to changes of a permission for the given player, instead of polling it.
+     *
+     * <p>The state is evaluated once whenever LuckPerms recalculates the player, coalesced to
+     * the end of the server tick, and {@code listener} is called on the server thread only if
+     * the state differs from the previous one. The state at the time of subscribing is the
+     * baseline and is not passed to the listener.</p>
+     * <p><blockquote><pre>
+     *     ChangeSubscription subscription = Permissions.subscribe(player, "mymod.fly",
+     *             state -&gt; updateFlight(player.getUUID(), state.asBoolean()));
+     * </pre></blockquote>
+     *
+     * @param player the player, must be called on the server thread
+     * @param permission the permission
+     * @param listener the listener
+     * @return the subscription, which should be closed once the changes are no longer needed
+     */
+    static @NotNull ChangeSubscription subscribe(@NotNull ServerPlayer player, @NotNull String permission, @NotNull Consumer<Tristate> listener) {
+        Objects.requireNonNull(player, "player");
+        Objects.requireNonNull(permission, "permission");
+        Objects.requireNonNull(listener, "listener");
+        return PermissionProviders.subscribePermission(player.getUUID(), permission, state -> listener.accept(LuckPermsStates.toLuckPerms(state)), player);
+    }
+
+    /**
+     * Subscribes to changes of a permission for a (potentially offline) player, instead of polling it.
+     *
+     * <p>The baseline is taken at the end of the current server tick. Changes are noticed
+     * while LuckPerms has the player loaded, and when the player logs in. When the player logs
+     * out the baseline is taken again from the first offline evaluation, as offline states do
+     * not account for the player's contexts.</p>
+     *
+     * @param uuid the player uuid
+     * @param permission the permission
+     * @param listener the listener, called on the server thread
+     * @return the subscription, which should be closed once the changes are no longer needed
+     * @see #subscribe(ServerPlayer, String, Consumer)
+     */
+    static @NotNull ChangeSubscription subscribe(@NotNull UUID uuid, @NotNull String permission, @NotNull Consumer<Tristate> listener) {
+        Objects.requireNonNull(uuid, "uuid");
+        Objects.requireNonNull(permission, "permission");
+        Objects.requireNonNull(listener, "listener");
+        return PermissionProviders.subscribePermission(uuid, permission, state -> listener.accept(LuckPermsStates.toLuckPerms(state)), null);
+    }
+
+    /**
+     * Gets an immutable snapshot of the given player's permissions and options, which can be
+     * queried from any thread without locking or hopping to the server thread.
+     *
+     * <p>The snapshot is replaced, not modified, when LuckPerms recalculates the player, so
+     * fetch it again rather than holding on to it.</p>
+     *
+     * @param player the player
+     * @return the current snapshot
+     */
+    static @NotNull PermissionSnapshot snapshot(@NotNull ServerPlayer player) {
+        Objects.requireNonNull(player, "player");
+        return PermissionProviders.getSnapshot(player.getUUID());
+    }
+
+    /**
+     * Gets the online players the given permission is granted to, for broadcasting to staff or
+     * similar, without checking every online player.
+     *
+     * <p>The first lookup of a permission checks every online player; from then on it is kept up
+     * to date as players log in and out and as LuckPerms recalculates them, so later lookups only
+     * cost as much as the number of players found. Only players with the permission explicitly
+     * set to true are included, not those who would pass a check through an op level default.</p>
+     * <p><blockquote><pre>
+     *     for (ServerPlayer staff : Permissions.onlineWith("mymod.staff.alerts")) {
+     *         staff.sendSystemMessage(alert);
+     *     }
+     * </pre></blockquote>
+     *
+     * @param permission the permission, which should be a fixed node as every one looked up stays indexed
+     * @return the players, must be called on the server thread
+     */
+    static @NotNull List<ServerPlayer> onlineWith(@NotNull String permission) {
+        Objects.requireNonNull(permission, "permission");
+        return PermissionProviders.getOnlineWith(permission);
     }
 
     /**
@@ -110,10 +301,10 @@ public interface Permissions {
      * @param permission the permission to check
      * @param defaultValue the default value to use if nothing has been set
      * @return a predicate that will perform the permission check
+     * @see PermissionRequirement
      */
     static @NotNull Predicate<CommandSourceStack> require(@NotNull String permission, boolean defaultValue) {
-        Objects.requireNonNull(permission, "permission");
-        return player -> check(player, permission, defaultValue);
+        return new PermissionNode(permission, defaultValue, false).asPredicate();
     }
 
     /**
@@ -124,10 +315,10 @@ public interface Permissions {
      * @param permission the permission to check
      * @param defaultRequiredLevel the required permission level to check for as a fallback
      * @return a predicate that will perform the permission check
+     * @see PermissionRequirement
      */
     static @NotNull Predicate<CommandSourceStack> require(@NotNull String permission, int defaultRequiredLevel) {
-        Objects.requireNonNull(permission, "permission");
-        return player -> check(player, permission, defaultRequiredLevel);
+        return new PermissionNode(permission, defaultRequiredLevel, false).asPredicate();
     }
 
     /**
@@ -136,10 +327,106 @@ public interface Permissions {
      *
      * @param permission the permission to check
      * @return a predicate that will perform the permission check
+     * @see PermissionRequirement
      */
     static @NotNull Predicate<CommandSourceStack> require(@NotNull String permission) {
-        Objects.requireNonNull(permission, "permission");
-        return player -> check(player, permission);
+        return new PermissionNode(permission, false, false).asPredicate();
+    }
+
+    /**
+     * Declares a node, falling back to {@code false} if the resultant state is {@link Tristate#UNDEFINED},
+     * and returns its handle.
+     *
+     * <p>Declared nodes are resolved for each player as they log in, off the server thread, so
+     * their first checks are already cached. Nodes that are checked but not declared, in a
+     * namespace that declares any nodes, are reported when the server starts, and within a
+     * minute of their first check after that. The defaults live in the returned handle, so
+     * checks should go through it rather than repeating them.</p>
+     * <p><blockquote><pre>
+     *     static final PermissionNode FLY = Permissions.declare("mymod.fly", 2);
+     * </pre></blockquote>
+     *
+     * @param permission the permission
+     * @return the node handle
+     * @throws IllegalArgumentException if the permission is not a valid node
+     */
+    static @NotNull PermissionNode declare(@NotNull String permission) {
+        PermissionNode node = node(permission);
+        PermissionProviders.declare(node.getPermission());
+        return node;
+    }
+
+    /**
+     * Declares a node, falling back to the {@code defaultValue} if the resultant state is
+     * {@link Tristate#UNDEFINED}, and returns its handle.
+     *
+     * @param permission the permission
+     * @param defaultValue the default value to use if nothing has been set
+     * @return the node handle
+     * @throws IllegalArgumentException if the permission is not a valid node
+     * @see #declare(String)
+     */
+    static @NotNull PermissionNode declare(@NotNull String permission, boolean defaultValue) {
+        PermissionNode node = node(permission, defaultValue);
+        PermissionProviders.declare(node.getPermission());
+        return node;
+    }
+
+    /**
+     * Declares a node, falling back to requiring the {@code defaultRequiredLevel} if the
+     * resultant state is {@link Tristate#UNDEFINED}, and returns its handle.
+     *
+     * @param permission the permission
+     * @param defaultRequiredLevel the required permission level to check for as a fallback
+     * @return the node handle
+     * @throws IllegalArgumentException if the permission is not a valid node or the level is negative
+     * @see #declare(String)
+     */
+    static @NotNull PermissionNode declare(@NotNull String permission, int defaultRequiredLevel) {
+        PermissionNode node = node(permission, defaultRequiredLevel);
+        PermissionProviders.declare(node.getPermission());
+        return node;
+    }
+
+    /**
+     * Creates a {@link PermissionNode} handle which falls back to {@code false} if the resultant
+     * state is {@link Tristate#UNDEFINED}.
+     *
+     * @param permission the permission
+     * @return the node handle
+     * @throws IllegalArgumentException if the permission is not a valid node
+     */
+    static @NotNull PermissionNode node(@NotNull String permission) {
+        return new PermissionNode(permission, false, true);
+    }
+
+    /**
+     * Creates a {@link PermissionNode} handle which falls back to the {@code defaultValue}
+     * if the resultant state is {@link Tristate#UNDEFINED}.
+     *
+     * @param permission the permission
+     * @param defaultValue the default value to use if nothing has been set
+     * @return the node handle
+     * @throws IllegalArgumentException if the permission is not a valid node
+     */
+    static @NotNull PermissionNode node(@NotNull String permission, boolean defaultValue) {
+        return new PermissionNode(permission, defaultValue, true);
+    }
+
+    /**
+     * Creates a {@link PermissionNode} handle which falls back to requiring the
+     * {@code defaultRequiredLevel} if the resultant state is {@link Tristate#UNDEFINED}.
+     *
+     * @param permission the permission
+     * @param defaultRequiredLevel the required permission level to check for as a fallback
+     * @return the node handle
+     * @throws IllegalArgumentException if the permission is not a valid node
+     */
+    static @NotNull PermissionNode node(@NotNull String permission, int defaultRequiredLevel) {
+        if (defaultRequiredLevel < 0) {
+            throw new IllegalArgumentException("defaultRequiredLevel must not be negative");
+        }
+        return new PermissionNode(permission, defaultRequiredLevel, true);
     }
 
     /**
@@ -150,8 +437,7 @@ public interface Permissions {
      * @return the state of the permission
      */
     static @NotNull Tristate getPermissionValue(@NotNull Entity entity, @NotNull String permission) {
-        Objects.requireNonNull(entity, "entity");
-        return getPermissionValue(entity.createCommandSourceStack(), permission);
+        return LuckPermsStates.toLuckPerms(resolve(entity, permission));
     }
 
     /**
@@ -164,8 +450,9 @@ public interface Permissions {
      * @return the result of the permission check
      */
     static boolean check(@NotNull Entity entity, @NotNull String permission, boolean defaultValue) {
-        Objects.requireNonNull(entity, "entity");
-        return check(entity.createCommandSourceStack(), permission, defaultValue);
+        me.infamous.permissions.Tristate permissionValue = resolve(entity, permission);
+        if(permissionValue == me.infamous.permissions.Tristate.UNDEFINED) return PermissionProviders.decided(entity, permission, defaultValue);
+        return PermissionProviders.decided(entity, permission, permissionValue.asBoolean());
     }
 
     /**
@@ -178,8 +465,9 @@ public interface Permissions {
      * @return the result of the permission check
      */
     static boolean check(@NotNull Entity entity, @NotNull String permission, int defaultRequiredLevel) {
-        Objects.requireNonNull(entity, "entity");
-        return check(entity.createCommandSourceStack(), permission, defaultRequiredLevel);
+        me.infamous.permissions.Tristate permissionValue = resolve(entity, permission);
+        if(permissionValue == me.infamous.permissions.Tristate.UNDEFINED) return PermissionProviders.decided(entity, permission, PermissionProviders.hasPermissionLevel(entity, defaultRequiredLevel));
+        return PermissionProviders.decided(entity, permission, permissionValue.asBoolean());
     }
 
     /**
@@ -191,8 +479,7 @@ public interface Permissions {
      * @return the result of the permission check
      */
     static boolean check(@NotNull Entity entity, @NotNull String permission) {
-        Objects.requireNonNull(entity, "entity");
-        return check(entity.createCommandSourceStack(), permission);
+        return PermissionProviders.decided(entity, permission, resolve(entity, permission).asBoolean());
     }
 
     /**
@@ -203,11 +490,7 @@ public interface Permissions {
      * @return the state of the permission
      */
     static @NotNull CompletableFuture<Tristate> getPermissionValue(@NotNull UUID uuid, @NotNull String permission) {
-        Objects.requireNonNull(uuid, "uuid");
-        Objects.requireNonNull(permission, "permission");
-        OfflinePermissionCheckEvent event = new OfflinePermissionCheckEvent(uuid, permission);
-        MinecraftForge.EVENT_BUS.post(event);
-        return event.getState();
+        return LuckPermsStates.toLuckPerms(resolve(uuid, permission));
     }
 
     /**
@@ -220,10 +503,9 @@ public interface Permissions {
      * @return the result of the permission check
      */
     static CompletableFuture<Boolean> check(@NotNull UUID uuid, @NotNull String permission, boolean defaultValue) {
-        CompletableFuture<Tristate> permissionValue = getPermissionValue(uuid, permission);
-        return permissionValue.thenApplyAsync(state -> {
-            if(state == Tristate.UNDEFINED) return defaultValue;
-            return state.asBoolean();
+        return PermissionExecutors.thenApply(resolve(uuid, permission), state -> {
+            if(state == me.infamous.permissions.Tristate.UNDEFINED) return PermissionProviders.decided(uuid, permission, defaultValue);
+            return PermissionProviders.decided(uuid, permission, state.asBoolean());
         });
     }
 
@@ -236,7 +518,74 @@ public interface Permissions {
      * @return the result of the permission check
      */
     static CompletableFuture<Boolean> check(@NotNull UUID uuid, @NotNull String permission) {
-        return getPermissionValue(uuid, permission).thenApplyAsync(Tristate::asBoolean);
+        return PermissionExecutors.thenApply(resolve(uuid, permission), state -> PermissionProviders.decided(uuid, permission, state.asBoolean()));
+    }
+
+    /**
+     * Performs a permission check for many (potentially) offline players at once, falling back
+     * to the {@code defaultValue} for each player whose resultant state is {@link Tristate#UNDEFINED}.
+     *
+     * <p>Duplicate uuids are checked once, and players are loaded with bounded concurrency.
+     * The returned future completes once, with the result for every player. A player that
+     * fails to load gets the {@code defaultValue} rather than failing the whole check.</p>
+     *
+     * @param uuids the players to perform the check for
+     * @param permission the permission to check
+     * @param defaultValue the default value to use if nothing has been set
+     * @return the result of the permission check per player
+     */
+    static @NotNull CompletableFuture<Map<UUID, Boolean>> checkAll(@NotNull Collection<UUID> uuids, @NotNull String permission, boolean defaultValue) {
+        Objects.requireNonNull(uuids, "uuids");
+        Objects.requireNonNull(permission, "permission");
+        return PermissionExecutors.thenApply(PermissionProviders.getPermissionValues(uuids, new String[]{permission}), results -> {
+            Map<UUID, Boolean> checked = new HashMap<>(results.size());
+            results.forEach((uuid, states) -> checked.put(uuid, PermissionProviders.decided(uuid, permission, states[0] == me.infamous.permissions.Tristate.UNDEFINED ? defaultValue : states[0].asBoolean())));
+            return Collections.unmodifiableMap(checked);
+        });
+    }
+
+    /**
+     * Performs a permission check for many (potentially) offline players at once, falling back
+     * to {@code false} for each player whose resultant state is {@link Tristate#UNDEFINED}.
+     *
+     * @param uuids the players to perform the check for
+     * @param permission the permission to check
+     * @return the result of the permission check per player
+     * @see #checkAll(Collection, String, boolean)
+     */
+    static @NotNull CompletableFuture<Map<UUID, Boolean>> checkAll(@NotNull Collection<UUID> uuids, @NotNull String permission) {
+        return checkAll(uuids, permission, false);
+    }
+
+    /**
+     * Performs several permission checks for many (potentially) offline players at once, falling
+     * back to {@code false} for each permission whose resultant state is {@link Tristate#UNDEFINED}.
+     *
+     * <p>Each player is loaded once for all permissions. Duplicate uuids are checked once, and
+     * players are loaded with bounded concurrency.</p>
+     *
+     * @param uuids the players to perform the checks for
+     * @param permissions the permissions to check
+     * @return the result of each permission check per player
+     */
+    static @NotNull CompletableFuture<Map<UUID, Map<String, Boolean>>> checkAll(@NotNull Collection<UUID> uuids, @NotNull Collection<String> permissions) {
+        Objects.requireNonNull(uuids, "uuids");
+        Objects.requireNonNull(permissions, "permissions");
+        String[] nodes = permissions.toArray(new String[0]);
+        for (String node : nodes) {
+            Objects.requireNonNull(node, "permission");
+        }
+        return PermissionExecutors.thenApply(PermissionProviders.getPermissionValues(uuids, nodes), results -> {
+            Map<UUID, Map<String, Boolean>> checked = new HashMap<>(results.size());
+            results.forEach((uuid, states) -> {
+                Map<String, Boolean> values = new HashMap<>(nodes.length);
+                for (int i = 0; i < nodes.length; i++) {
+                    values.put(nodes[i], PermissionProviders.decided(uuid, nodes[i], states[i].asBoolean()));
+                }
+                checked.put(uuid, Collections.unmodifiableMap(values));
+            });
+            return Collections.unmodifiableMap(checked);
+        });
     }
 
     /**
@@ -279,11 +628,43 @@ public interface Permissions {
     static CompletableFuture<Boolean> check(@NotNull GameProfile profile, @NotNull String permission, int defaultRequiredLevel, @NotNull MinecraftServer server) {
         Objects.requireNonNull(profile, "profile");
         Objects.requireNonNull(server, "server");
-        BooleanSupplier permissionLevelCheck = () -> server.getProfilePermissions(profile) >= defaultRequiredLevel;
-        return getPermissionValue(profile.getId(), permission).thenApplyAsync(state -> {
-            if(state == Tristate.UNDEFINED) return permissionLevelCheck.getAsBoolean();
-            return state.asBoolean();
+        BooleanSupplier permissionLevelCheck = () -> PermissionProviders.hasPermissionLevel(profile, defaultRequiredLevel, server);
+        return PermissionExecutors.thenApply(resolve(profile.getId(), permission), state -> {
+            if(state == me.infamous.permissions.Tristate.UNDEFINED) return PermissionProviders.decided(profile.getId(), permission, permissionLevelCheck.getAsBoolean());
+            return PermissionProviders.decided(profile.getId(), permission, state.asBoolean());
         });
     }
 
+    /*
+     * The checks resolve our own Tristate rather than going through the LuckPerms-typed
+     * getPermissionValue methods, so that they also work when LuckPerms is not installed.
+     */
+
+    private static me.infamous.permissions.Tristate resolve(CommandSourceStack source, String permission) {
+        Objects.requireNonNull(source, "source");
+        Objects.requireNonNull(permission, "permission");
+        return PermissionProviders.getPermissionValue(source, permission);
+    }
+
+    private static me.infamous.permissions.Tristate[] resolve(CommandSourceStack source, String[] permissions) {
+        Objects.requireNonNull(source, "source");
+        Objects.requireNonNull(permissions, "permissions");
+        for (String permission : permissions) {
+            Objects.requireNonNull(permission, "permission");
+        }
+        return PermissionProviders.getPermissionValues(source, permissions);
+    }
+
+    private static me.infamous.permissions.Tristate resolve(Entity entity, String permission) {
+        Objects.requireNonNull(entity, "entity");
+        Objects.requireNonNull(permission, "permission");
+        return PermissionProviders.getPermissionValue(entity, permission);
+    }
+
+    private static CompletableFuture<me.infamous.permissions.Tristate> resolve(UUID uuid, String permission) {
+        Objects.requireNonNull(uuid, "uuid");
+        Objects.requireNonNull(permission, "permission");
+        return PermissionProviders.getPermissionValue(uuid, permission);
+    }
+
 }